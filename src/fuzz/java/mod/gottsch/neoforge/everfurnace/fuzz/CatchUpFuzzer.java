@@ -0,0 +1,254 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.fuzz;
+
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookResult;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookSimulator;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookState;
+import mod.gottsch.neoforge.everfurnace.core.simulation.TickSimulator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Differential fuzzer for the catch-up simulation. Generates random furnace states and elapsed times,
+ * compares CookSimulator against the tick-by-tick TickSimulator reference on every core,
+ * then shrinks the failing cases and reports the smallest ones.
+ * <p>
+ * Usage: CatchUpFuzzer [cases] [seed]. Exits with status 1 if any case fails.
+ */
+public final class CatchUpFuzzer {
+    private static final long DEFAULT_CASES = 10_000_000L;
+    private static final int LEAF_SIZE = 10_000;
+    private static final int REPORTED = 10;
+    private static final int[] FUEL_BURN_TIMES = {100, 200, 300, 1600, 2400, 4000, 16000, 20000};
+    private static final int[] COOKING_TIMES = {100, 200};
+
+    private CatchUpFuzzer() {}
+
+    public static void main(String[] args) {
+        long cases = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_CASES;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        System.out.printf("fuzzing %d cases with seed %d on %d threads%n", cases, seed, ForkJoinPool.commonPool().getParallelism());
+
+        long start = System.nanoTime();
+        Failures failures = ForkJoinPool.commonPool().invoke(new FuzzTask(seed, 0, cases));
+        System.out.printf("%d of %d cases failed in %.1fs%n", failures.count, cases, (System.nanoTime() - start) / 1e9);
+        if (failures.count == 0) {
+            return;
+        }
+
+        List<Case> shrunk = failures.samples.parallelStream()
+                .map(CatchUpFuzzer::shrink)
+                .distinct()
+                .sorted(Comparator.comparingLong(Case::size))
+                .limit(REPORTED)
+                .toList();
+        for (Case failure : shrunk) {
+            System.out.println(failure.state() + " deltaTime=" + failure.deltaTime());
+            System.out.println("  expected " + TickSimulator.simulate(failure.state(), failure.deltaTime()));
+            System.out.println("  actual   " + CookSimulator.simulate(failure.state(), failure.deltaTime()));
+        }
+        System.exit(1);
+    }
+
+    /**
+     * @return true if the closed form agrees with the reference. The lit duration only matters while lit.
+     */
+    static boolean check(Case c) {
+        CookResult expected = TickSimulator.simulate(c.state(), c.deltaTime());
+        CookResult actual = CookSimulator.simulate(c.state(), c.deltaTime());
+        return expected.smelted() == actual.smelted()
+                && expected.fuelConsumed() == actual.fuelConsumed()
+                && expected.litTime() == actual.litTime()
+                && expected.cookingProgress() == actual.cookingProgress()
+                && (!expected.isLit() || expected.litDuration() == actual.litDuration());
+    }
+
+    /**
+     * A random lit furnace state, biased towards vanilla fuels and cooking times and towards short elapsed times,
+     * as the reference costs one step per tick.
+     */
+    static Case generate(SplittableRandom random) {
+        int cookingTotalTime = random.nextInt(4) == 0 ? COOKING_TIMES[random.nextInt(COOKING_TIMES.length)] : 1 + random.nextInt(400);
+        int burnTime = switch (random.nextInt(8)) {
+            case 0 -> 0;
+            case 1, 2, 3 -> FUEL_BURN_TIMES[random.nextInt(FUEL_BURN_TIMES.length)];
+            default -> 1 + random.nextInt(1000);
+        };
+        boolean bucket = burnTime > 0 && random.nextInt(8) == 0;
+        int fuelCount = burnTime == 0 ? 0 : bucket ? 1 : random.nextInt(65);
+        boolean fuelResidue = bucket || burnTime == 0 && random.nextBoolean();
+        int litDuration = 1 + random.nextInt(burnTime > 0 && random.nextBoolean() ? burnTime : 2000);
+        int litTime = 1 + random.nextInt(litDuration);
+        CookState state = new CookState(random.nextInt(65), fuelCount, burnTime, fuelResidue,
+                litTime, litDuration, random.nextInt(cookingTotalTime), cookingTotalTime, random.nextInt(65));
+        long deltaTime = random.nextInt(16) == 0 ? 1 + random.nextInt(50_000) : 1 + random.nextInt(2_000);
+        return new Case(state, deltaTime);
+    }
+
+    /**
+     * Greedily reduces each field of a failing case for as long as it keeps failing.
+     */
+    static Case shrink(Case failure) {
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (Case candidate : candidates(failure)) {
+                if (candidate.size() < failure.size() && isValid(candidate) && !check(candidate)) {
+                    failure = candidate;
+                    progress = true;
+                    break;
+                }
+            }
+        }
+        return failure;
+    }
+
+    private static List<Case> candidates(Case c) {
+        CookState s = c.state();
+        List<Case> candidates = new ArrayList<>();
+        for (long delta : smaller(c.deltaTime(), 1)) {
+            candidates.add(new Case(s, delta));
+        }
+        for (long v : smaller(s.inputCount(), 0)) {
+            candidates.add(new Case(new CookState((int) v, s.fuelCount(), s.fuelBurnTime(), s.fuelResidue(), s.litTime(), s.litDuration(), s.cookingProgress(), s.cookingTotalTime(), s.outputSpace()), c.deltaTime()));
+        }
+        for (long v : smaller(s.fuelCount(), 0)) {
+            candidates.add(new Case(new CookState(s.inputCount(), (int) v, s.fuelBurnTime(), s.fuelResidue(), s.litTime(), s.litDuration(), s.cookingProgress(), s.cookingTotalTime(), s.outputSpace()), c.deltaTime()));
+        }
+        for (long v : smaller(s.fuelBurnTime(), 0)) {
+            candidates.add(new Case(new CookState(s.inputCount(), v == 0 ? 0 : s.fuelCount(), (int) v, s.fuelResidue(), s.litTime(), s.litDuration(), s.cookingProgress(), s.cookingTotalTime(), s.outputSpace()), c.deltaTime()));
+        }
+        if (s.fuelResidue()) {
+            candidates.add(new Case(new CookState(s.inputCount(), s.fuelCount(), s.fuelBurnTime(), false, s.litTime(), s.litDuration(), s.cookingProgress(), s.cookingTotalTime(), s.outputSpace()), c.deltaTime()));
+        }
+        for (long v : smaller(s.litTime(), 1)) {
+            candidates.add(new Case(new CookState(s.inputCount(), s.fuelCount(), s.fuelBurnTime(), s.fuelResidue(), (int) v, s.litDuration(), s.cookingProgress(), s.cookingTotalTime(), s.outputSpace()), c.deltaTime()));
+        }
+        for (long v : smaller(s.litDuration(), 1)) {
+            candidates.add(new Case(new CookState(s.inputCount(), s.fuelCount(), s.fuelBurnTime(), s.fuelResidue(), s.litTime(), (int) v, s.cookingProgress(), s.cookingTotalTime(), s.outputSpace()), c.deltaTime()));
+        }
+        for (long v : smaller(s.cookingProgress(), 0)) {
+            candidates.add(new Case(new CookState(s.inputCount(), s.fuelCount(), s.fuelBurnTime(), s.fuelResidue(), s.litTime(), s.litDuration(), (int) v, s.cookingTotalTime(), s.outputSpace()), c.deltaTime()));
+        }
+        for (long v : smaller(s.cookingTotalTime(), 1)) {
+            candidates.add(new Case(new CookState(s.inputCount(), s.fuelCount(), s.fuelBurnTime(), s.fuelResidue(), s.litTime(), s.litDuration(), s.cookingProgress(), (int) v, s.outputSpace()), c.deltaTime()));
+        }
+        for (long v : smaller(s.outputSpace(), 0)) {
+            candidates.add(new Case(new CookState(s.inputCount(), s.fuelCount(), s.fuelBurnTime(), s.fuelResidue(), s.litTime(), s.litDuration(), s.cookingProgress(), s.cookingTotalTime(), (int) v), c.deltaTime()));
+        }
+        return candidates;
+    }
+
+    /**
+     * @return the minimum, half way to it and one less than the value, where they are smaller
+     */
+    private static long[] smaller(long value, long min) {
+        if (value <= min) {
+            return new long[0];
+        }
+        long half = min + (value - min) / 2;
+        return half > min && half < value - 1 ? new long[] {min, half, value - 1} : value - 1 > min ? new long[] {min, value - 1} : new long[] {min};
+    }
+
+    /**
+     * Shrinking must stay within the states the game can produce.
+     */
+    private static boolean isValid(Case c) {
+        CookState s = c.state();
+        return s.cookingProgress() < s.cookingTotalTime()
+                && s.litTime() <= s.litDuration()
+                && (s.fuelBurnTime() > 0 || s.fuelCount() == 0);
+    }
+
+    record Case(CookState state, long deltaTime) {
+        long size() {
+            return deltaTime + state.inputCount() + state.fuelCount() + state.fuelBurnTime() + (state.fuelResidue() ? 1 : 0)
+                    + state.litTime() + state.litDuration() + state.cookingProgress() + state.cookingTotalTime() + state.outputSpace();
+        }
+    }
+
+    /**
+     * The number of failing cases, and a bounded sample of them to shrink.
+     */
+    static final class Failures {
+        private static final int MAX_SAMPLES = 100;
+
+        long count;
+        final List<Case> samples = new ArrayList<>();
+
+        void add(Case failure) {
+            count++;
+            if (samples.size() < MAX_SAMPLES) {
+                samples.add(failure);
+            }
+        }
+
+        Failures merge(Failures other) {
+            count += other.count;
+            for (Case failure : other.samples) {
+                if (samples.size() >= MAX_SAMPLES) {
+                    break;
+                }
+                samples.add(failure);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Checks cases [from, to), splitting until a range is small enough to run on one thread.
+     * Each leaf seeds its own generator from its start index, so a run is reproducible for a given seed.
+     */
+    static final class FuzzTask extends RecursiveTask<Failures> {
+        private final long seed;
+        private final long from;
+        private final long to;
+
+        FuzzTask(long seed, long from, long to) {
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Failures compute() {
+            if (to - from <= LEAF_SIZE) {
+                SplittableRandom random = new SplittableRandom(seed ^ (from * 0x9E3779B97F4A7C15L));
+                Failures failures = new Failures();
+                for (long i = from; i < to; i++) {
+                    Case c = generate(random);
+                    if (!check(c)) {
+                        failures.add(c);
+                    }
+                }
+                return failures;
+            }
+            long mid = from + (to - from) / 2;
+            FuzzTask left = new FuzzTask(seed, from, mid);
+            left.fork();
+            Failures right = new FuzzTask(seed, mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+}
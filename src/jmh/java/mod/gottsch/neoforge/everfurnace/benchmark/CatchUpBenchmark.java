@@ -0,0 +1,92 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.benchmark;
+
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookResult;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookSimulator;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookState;
+import mod.gottsch.neoforge.everfurnace.core.simulation.TickSimulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of catching up a furnace over the elapsed time: the closed-form CookSimulator against stepping
+ * the vanilla rules tick by tick, which is what the furnace costs when it is kept loaded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatchUpBenchmark {
+    private static final int SMELT_TIME = 200;
+
+    /** 1 second, 1 minute, 1 in-game day, 1 in-game week */
+    @Param({"20", "1200", "24000", "168000"})
+    public long deltaTime;
+
+    @Param({"1", "16", "64"})
+    public int stackSize;
+
+    @Param({"STICK", "COAL", "BLAZE_ROD", "LAVA_BUCKET"})
+    public Fuel fuel;
+
+    private CookState state;
+
+    @Setup
+    public void setup() {
+        boolean bucket = fuel == Fuel.LAVA_BUCKET;
+        state = new CookState(stackSize, bucket ? 1 : stackSize, fuel.burnTime, bucket,
+                fuel.burnTime, fuel.burnTime, 0, SMELT_TIME, 64);
+    }
+
+    @Benchmark
+    public CookResult closedForm() {
+        return CookSimulator.simulate(state, deltaTime);
+    }
+
+    @Benchmark
+    public CookResult tickByTick() {
+        return TickSimulator.simulate(state, deltaTime);
+    }
+
+    public enum Fuel {
+        STICK(100),
+        COAL(1600),
+        BLAZE_ROD(2400),
+        LAVA_BUCKET(20000);
+
+        final int burnTime;
+
+        Fuel(int burnTime) {
+            this.burnTime = burnTime;
+        }
+    }
+}
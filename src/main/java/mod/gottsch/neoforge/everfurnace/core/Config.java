@@ -0,0 +1,88 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core;
+
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.fml.event.config.ModConfigEvent;
+import net.neoforged.neoforge.common.ModConfigSpec;
+
+/**
+ * Server config for EverFurnace.
+ */
+@EventBusSubscriber(modid = EverFurnace.MODID, bus = EventBusSubscriber.Bus.MOD)
+public class Config {
+    private static final ModConfigSpec.Builder BUILDER = new ModConfigSpec.Builder();
+
+    private static final ModConfigSpec.BooleanValue ENABLE_SCHEDULER = BUILDER
+            .comment("Queue large furnace catch-ups and process them under a per-tick time budget instead of all on the first tick.")
+            .define("catchUp.enableScheduler", true);
+
+    private static final ModConfigSpec.IntValue SCHEDULE_THRESHOLD = BUILDER
+            .comment("The minimum elapsed time (in ticks) before a catch-up is queued rather than run immediately.")
+            .defineInRange("catchUp.scheduleThreshold", 1200, 20, Integer.MAX_VALUE);
+
+    private static final ModConfigSpec.IntValue TICK_BUDGET = BUILDER
+            .comment("The time (in microseconds) the scheduler may spend on queued catch-ups each server tick.")
+            .defineInRange("catchUp.tickBudget", 2000, 100, 50000);
+
+    private static final ModConfigSpec.BooleanValue HOPPER_CHAINS = BUILDER
+            .comment("Include the hoppers feeding and draining a furnace, and the containers behind them, in its catch-up.",
+                    "Lets an unloaded auto-smelter keep working through more than one stack.")
+            .define("catchUp.hopperChains", false);
+
+    private static final ModConfigSpec.BooleanValue DORMANT_FURNACES = BUILDER
+            .comment("Let lit furnaces that nobody is viewing skip vanilla ticking until their next event",
+                    "(an item finishing or the fuel running out) and fast-forward them in one step.",
+                    "Enabling it while the server runs only applies to furnaces as they load.")
+            .define("dormant.enabled", false);
+
+    private static final ModConfigSpec.IntValue DORMANT_MIN_SLEEP_TICKS = BUILDER
+            .comment("The minimum number of ticks a furnace must be able to skip before it goes dormant.")
+            .defineInRange("dormant.minSleepTicks", 20, 1, Integer.MAX_VALUE);
+
+    private static final ModConfigSpec.BooleanValue INTERPOLATE_MENUS = BUILDER
+            .comment("Instead of syncing the burn and cook progress of an open furnace menu every tick, send it only when",
+                    "an item finishes, the fuel runs out or the inventory changes, and let the client predict it in between.",
+                    "Only applies to clients that have EverFurnace installed.")
+            .define("sync.interpolateMenus", false);
+
+    static final ModConfigSpec SPEC = BUILDER.build();
+
+    public static boolean enableScheduler = true;
+    public static int scheduleThreshold = 1200;
+    public static long tickBudgetNanos = 2000 * 1000L;
+    public static boolean hopperChains = false;
+    public static boolean dormantFurnaces = false;
+    public static int dormantMinSleepTicks = 20;
+    public static boolean interpolateMenus = false;
+
+    @SubscribeEvent
+    static void onLoad(final ModConfigEvent event) {
+        if (event.getConfig().getSpec() != SPEC || event instanceof ModConfigEvent.Unloading) {
+            return;
+        }
+        enableScheduler = ENABLE_SCHEDULER.get();
+        scheduleThreshold = SCHEDULE_THRESHOLD.get();
+        tickBudgetNanos = TICK_BUDGET.get() * 1000L;
+        hopperChains = HOPPER_CHAINS.get();
+        dormantFurnaces = DORMANT_FURNACES.get();
+        dormantMinSleepTicks = DORMANT_MIN_SLEEP_TICKS.get();
+        interpolateMenus = INTERPOLATE_MENUS.get();
+    }
+}
@@ -21,6 +21,7 @@ import com.mojang.logging.LogUtils;
 import net.neoforged.bus.api.IEventBus;
 import net.neoforged.fml.ModContainer;
 import net.neoforged.fml.common.Mod;
+import net.neoforged.fml.config.ModConfig;
 import org.slf4j.Logger;
 
 // The value here should match an entry in the META-INF/neoforge.mods.toml file
@@ -61,6 +62,9 @@ public class EverFurnace
     // FML will recognize some parameter types like IEventBus or ModContainer and pass them in automatically.
     public EverFurnace(IEventBus modEventBus, ModContainer modContainer)
     {
+        // Register our mod's ModConfigSpec so that FML can create and load the config file for us
+        modContainer.registerConfig(ModConfig.Type.SERVER, Config.SPEC);
+
 //        // Register the commonSetup method for modloading
 //        modEventBus.addListener(this::commonSetup);
 //
@@ -78,9 +82,6 @@ public class EverFurnace
 //
 //        // Register the item to a creative tab
 //        modEventBus.addListener(this::addCreative);
-//
-//        // Register our mod's ModConfigSpec so that FML can create and load the config file for us
-//        modContainer.registerConfig(ModConfig.Type.COMMON, Config.SPEC);
     }
 //
 //    private void commonSetup(final FMLCommonSetupEvent event)
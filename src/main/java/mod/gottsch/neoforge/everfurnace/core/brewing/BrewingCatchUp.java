@@ -0,0 +1,107 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.brewing;
+
+import mod.gottsch.neoforge.everfurnace.core.mixin.IBrewingStandBlockEntity;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookResult;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookSimulator;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookState;
+import mod.gottsch.neoforge.everfurnace.core.stats.CatchUpStats;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.NonNullList;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.alchemy.PotionBrewing;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.BrewingStandBlockEntity;
+
+/**
+ * Applies the time elapsed while a brewing stand was unloaded.
+ * A brew is a cooked item: it takes one tick to start and 400 to count down, and each brew after
+ * the current one takes one unit of fuel when it starts, so blaze powder maps to a fuel item worth 20 brews.
+ */
+public final class BrewingCatchUp {
+    // the tick a brew starts on plus the 400 ticks it counts down
+    private static final int BREW_PERIOD = 401;
+    private static final int FUEL_PER_POWDER = 20;
+
+    private static final int INGREDIENT_SLOT = 3;
+    private static final int FUEL_SLOT = 4;
+
+    private BrewingCatchUp() {}
+
+    public static void run(Level level, BlockPos pos, BrewingStandBlockEntity brewingStand, long deltaTime) {
+        long start = CatchUpStats.start();
+        IBrewingStandBlockEntity accessor = (IBrewingStandBlockEntity) brewingStand;
+        NonNullList<ItemStack> items = accessor.getBrewingItems();
+        int brewTime = accessor.getBrewTime();
+        if (brewTime <= 0 || !items.get(INGREDIENT_SLOT).is(accessor.getIngredient())) {
+            // not brewing, or vanilla cancels the brew on the next tick
+            return;
+        }
+
+        int maxBrews = countBrews(level.potionBrewing(), items, 1 + deltaTime / BREW_PERIOD);
+        ItemStack fuelStack = items.get(FUEL_SLOT);
+        int powders = fuelStack.is(Items.BLAZE_POWDER) ? fuelStack.getCount() : 0;
+        int fuel = accessor.getFuel();
+
+        CookState state = new CookState(maxBrews, fuel + powders * FUEL_PER_POWDER, BREW_PERIOD, false,
+                brewTime + 1, BREW_PERIOD, BREW_PERIOD - brewTime, BREW_PERIOD, maxBrews);
+        CookResult result = CookSimulator.simulate(state, deltaTime);
+
+        for (int i = 0; i < result.smelted(); i++) {
+            IBrewingStandBlockEntity.callDoBrew(level, pos, items);
+        }
+
+        if (result.fuelConsumed() > 0) {
+            // vanilla takes the next blaze powder as soon as the fuel runs out
+            int remaining = fuel + powders * FUEL_PER_POWDER - result.fuelConsumed();
+            int newFuel = remaining > 0 ? (remaining - 1) % FUEL_PER_POWDER + 1 : 0;
+            fuelStack.shrink(powders - (remaining - newFuel) / FUEL_PER_POWDER);
+            accessor.setFuel(newFuel);
+        }
+
+        boolean brewing = result.isLit() && result.smelted() < maxBrews && result.cookingProgress() > 0;
+        accessor.setBrewTime(brewing ? BREW_PERIOD - result.cookingProgress() : 0);
+
+        if (result.smelted() > 0 || result.fuelConsumed() > 0 || brewTime != accessor.getBrewTime()) {
+            brewingStand.setChanged();
+        }
+        CatchUpStats.record(level, pos, deltaTime, result, start);
+    }
+
+    /**
+     * @return the number of brews the stand can make in a row with its current bottles and ingredient, up to limit
+     */
+    private static int countBrews(PotionBrewing potionBrewing, NonNullList<ItemStack> items, long limit) {
+        NonNullList<ItemStack> copy = NonNullList.withSize(items.size(), ItemStack.EMPTY);
+        for (int i = 0; i < items.size(); i++) {
+            copy.set(i, items.get(i).copy());
+        }
+        int brews = 0;
+        while (brews < limit && IBrewingStandBlockEntity.callIsBrewable(potionBrewing, copy)) {
+            ItemStack ingredient = copy.get(INGREDIENT_SLOT);
+            for (int i = 0; i < INGREDIENT_SLOT; i++) {
+                copy.set(i, potionBrewing.mix(ingredient, copy.get(i)));
+            }
+            ingredient.shrink(1);
+            brews++;
+        }
+        return brews;
+    }
+}
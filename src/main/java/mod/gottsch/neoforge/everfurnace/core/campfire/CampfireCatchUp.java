@@ -0,0 +1,90 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.campfire;
+
+import mod.gottsch.neoforge.everfurnace.core.furnace.SmeltingCache;
+import mod.gottsch.neoforge.everfurnace.core.mixin.ICampfireBlockEntity;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookResult;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookSimulator;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookState;
+import mod.gottsch.neoforge.everfurnace.core.stats.CatchUpStats;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.NonNullList;
+import net.minecraft.world.Containers;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.crafting.RecipeType;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.CampfireBlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.gameevent.GameEvent;
+
+/**
+ * Applies the time elapsed while a lit campfire was unloaded.
+ * Each slot is simulated on its own as a furnace holding a single item that never runs out of fuel.
+ * Cooked items are dropped on the campfire, as vanilla does.
+ */
+public final class CampfireCatchUp {
+
+    private CampfireCatchUp() {}
+
+    public static void run(Level level, BlockPos pos, BlockState state, CampfireBlockEntity campfire, long deltaTime) {
+        long start = CatchUpStats.start();
+        NonNullList<ItemStack> items = campfire.getItems();
+        ICampfireBlockEntity accessor = (ICampfireBlockEntity) campfire;
+        int[] cookingProgress = accessor.getCookingProgress();
+        int[] cookingTime = accessor.getCookingTime();
+
+        boolean changed = false;
+        int cooked = 0;
+        for (int i = 0; i < items.size(); i++) {
+            ItemStack stack = items.get(i);
+            if (stack.isEmpty()) {
+                continue;
+            }
+            changed = true;
+
+            CookState slot = new CookState(1, 0, 0, false, Integer.MAX_VALUE, 0,
+                    cookingProgress[i], Math.max(1, cookingTime[i]), 1);
+            CookResult result = CookSimulator.simulate(slot, deltaTime);
+            if (result.smelted() == 0) {
+                cookingProgress[i] = result.cookingProgress();
+                continue;
+            }
+
+            // like vanilla, an item without a recipe is dropped as is
+            SmeltingCache.Smelting smelting = SmeltingCache.getSmelting(level, RecipeType.CAMPFIRE_COOKING, stack);
+            ItemStack cookedStack = smelting.recipe() == null ? stack : smelting.result().copy();
+            if (cookedStack.isItemEnabled(level.enabledFeatures())) {
+                Containers.dropItemStack(level, pos.getX(), pos.getY(), pos.getZ(), cookedStack);
+                items.set(i, ItemStack.EMPTY);
+                cooked++;
+            } else {
+                cookingProgress[i] = cookingTime[i];
+            }
+        }
+
+        if (cooked > 0) {
+            level.sendBlockUpdated(pos, state, state, 3);
+            level.gameEvent(GameEvent.BLOCK_CHANGE, pos, GameEvent.Context.of(state));
+        }
+        if (changed) {
+            campfire.setChanged();
+            CatchUpStats.record(level, pos, deltaTime, cooked, 0, start);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.command;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import mod.gottsch.neoforge.everfurnace.core.EverFurnace;
+import mod.gottsch.neoforge.everfurnace.core.furnace.FurnaceIndex;
+import mod.gottsch.neoforge.everfurnace.core.furnace.SmeltingCache;
+import mod.gottsch.neoforge.everfurnace.core.stats.CatchUpStats;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerLevel;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.RegisterCommandsEvent;
+
+import java.util.List;
+
+/**
+ * /everfurnace admin command.
+ */
+@EventBusSubscriber(modid = EverFurnace.MODID)
+public final class EverFurnaceCommand {
+    private static final int DEFAULT_LIMIT = 10;
+
+    private EverFurnaceCommand() {}
+
+    @SubscribeEvent
+    static void onRegisterCommands(RegisterCommandsEvent event) {
+        register(event.getDispatcher());
+    }
+
+    private static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal(EverFurnace.MODID)
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.literal("pending")
+                        .executes(context -> pending(context.getSource(), DEFAULT_LIMIT))
+                        .then(Commands.argument("limit", IntegerArgumentType.integer(1, 100))
+                                .executes(context -> pending(context.getSource(), IntegerArgumentType.getInteger(context, "limit")))))
+                .then(Commands.literal("cache")
+                        .executes(context -> cache(context.getSource())))
+                .then(Commands.literal("stats")
+                        .executes(context -> stats(context.getSource()))
+                        .then(Commands.literal("reset")
+                                .executes(context -> resetStats(context.getSource())))));
+    }
+
+    /**
+     * Lists the unloaded lit furnaces of the source's dimension with the most pending catch-up time.
+     */
+    private static int pending(CommandSourceStack source, int limit) {
+        ServerLevel level = source.getLevel();
+        long gameTime = level.getGameTime();
+        FurnaceIndex index = FurnaceIndex.get(level);
+        List<FurnaceIndex.Pending> pending = index.getMostPending(gameTime, limit);
+
+        source.sendSuccess(() -> Component.literal(String.format("%d unloaded lit furnace(s) in %s",
+                index.size(), level.dimension().location())), false);
+        for (FurnaceIndex.Pending entry : pending) {
+            long stallsIn = entry.entry().stallGameTime() - gameTime;
+            source.sendSuccess(() -> Component.literal(String.format("  [%d, %d, %d] %d ticks pending, %s",
+                    entry.pos().getX(), entry.pos().getY(), entry.pos().getZ(), entry.pendingTime(),
+                    stallsIn > 0 ? "stalls in " + stallsIn + " ticks" : "stalled " + -stallsIn + " ticks ago")), false);
+        }
+        return pending.size();
+    }
+
+    /**
+     * Shows the hit and miss counters of the shared SmeltingCache.
+     */
+    private static int cache(CommandSourceStack source) {
+        long hits = SmeltingCache.getHits();
+        long misses = SmeltingCache.getMisses();
+        long total = hits + misses;
+        source.sendSuccess(() -> Component.literal(String.format("smelting cache: %d hits, %d misses (%.1f%% hit rate)",
+                hits, misses, total == 0 ? 0.0 : 100.0 * hits / total)), false);
+        return (int) Math.min(hits, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Shows the catch-up counters, cost percentiles and the most expensive positions.
+     */
+    private static int stats(CommandSourceStack source) {
+        long count = CatchUpStats.getCount();
+        source.sendSuccess(() -> Component.literal(String.format("catch-ups: %d total, %d in the last minute, %.1f µs mean",
+                count, CatchUpStats.getLastMinute(), count == 0 ? 0.0 : CatchUpStats.getTotalNanos() / 1000.0 / count)), false);
+        source.sendSuccess(() -> Component.literal(String.format("cost: p50 <= %.1f µs, p99 <= %.1f µs",
+                CatchUpStats.getPercentile(50) / 1000.0, CatchUpStats.getPercentile(99) / 1000.0)), false);
+        source.sendSuccess(() -> Component.literal(String.format("largest deltaTime: %d ticks", CatchUpStats.getMaxDeltaTime())), false);
+        for (CatchUpStats.Top top : CatchUpStats.getTop()) {
+            BlockPos pos = BlockPos.of(top.pos());
+            source.sendSuccess(() -> Component.literal(String.format("  %s [%d, %d, %d] %.1f µs for %d ticks",
+                    top.dimension(), pos.getX(), pos.getY(), pos.getZ(), top.nanos() / 1000.0, top.deltaTime())), false);
+        }
+        return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    private static int resetStats(CommandSourceStack source) {
+        CatchUpStats.reset();
+        source.sendSuccess(() -> Component.literal("catch-up stats reset"), true);
+        return 1;
+    }
+}
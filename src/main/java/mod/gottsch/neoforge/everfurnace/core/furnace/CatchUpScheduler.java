@@ -0,0 +1,90 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.furnace;
+
+import mod.gottsch.neoforge.everfurnace.core.Config;
+import mod.gottsch.neoforge.everfurnace.core.EverFurnace;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+import net.neoforged.neoforge.event.tick.ServerTickEvent;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Spreads large catch-ups over several server ticks.
+ * Furnaces are queued in the order they first tick after loading and are drained, oldest first,
+ * until the configured per-tick time budget is used up. At least one catch-up is processed
+ * every tick so that the queue always makes progress.
+ */
+@EventBusSubscriber(modid = EverFurnace.MODID)
+public final class CatchUpScheduler {
+    private static final Deque<Entry> QUEUE = new ArrayDeque<>();
+
+    private CatchUpScheduler() {}
+
+    public static boolean shouldSchedule(long deltaTime) {
+        return Config.enableScheduler && deltaTime >= Config.scheduleThreshold;
+    }
+
+    /**
+     * Queues the furnace. The furnace is flagged as scheduled and must not tick until it is caught up.
+     */
+    public static void schedule(ServerLevel level, BlockPos pos, IEverFurnace furnace) {
+        furnace.everfurnace$setScheduled(true);
+        QUEUE.addLast(new Entry(level, pos.immutable(), furnace));
+    }
+
+    /**
+     * Removes the furnace from the queue, for a furnace that is caught up early. Does not clear its scheduled flag.
+     */
+    public static void cancel(IEverFurnace furnace) {
+        QUEUE.removeIf(entry -> entry.furnace() == furnace);
+    }
+
+    public static int size() {
+        return QUEUE.size();
+    }
+
+    @SubscribeEvent
+    static void onServerTick(ServerTickEvent.Post event) {
+        if (QUEUE.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + Config.tickBudgetNanos;
+        do {
+            Entry entry = QUEUE.pollFirst();
+            // skip furnaces that have since been unloaded or replaced; their saved last game time is untouched
+            if (!entry.level().isLoaded(entry.pos()) || entry.level().getBlockEntity(entry.pos()) != entry.furnace()) {
+                entry.furnace().everfurnace$setScheduled(false);
+                continue;
+            }
+            entry.furnace().everfurnace$catchUp();
+        } while (!QUEUE.isEmpty() && System.nanoTime() < deadline);
+    }
+
+    @SubscribeEvent
+    static void onServerStopped(ServerStoppedEvent event) {
+        QUEUE.clear();
+    }
+
+    private record Entry(ServerLevel level, BlockPos pos, IEverFurnace furnace) {}
+}
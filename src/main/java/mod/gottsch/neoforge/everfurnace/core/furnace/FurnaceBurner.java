@@ -0,0 +1,124 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.furnace;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import mod.gottsch.neoforge.everfurnace.core.mixin.IEverFurnaceBlockEntity;
+import net.minecraft.core.NonNullList;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.crafting.Recipe;
+import net.minecraft.world.item.crafting.RecipeHolder;
+import net.minecraft.world.item.crafting.SingleRecipeInput;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
+
+import javax.annotation.Nullable;
+
+/**
+ * Batched equivalent of the vanilla AbstractFurnaceBlockEntity.burn().
+ */
+public final class FurnaceBurner {
+    private static final int INPUT_SLOT = 0;
+    private static final int FUEL_SLOT = 1;
+    private static final int OUTPUT_SLOT = 2;
+
+    private FurnaceBurner() {}
+
+    /**
+     * Smelts up to <code>count</code> items in one step, leaving the inventory in the same
+     * state as <code>count</code> successive calls to burn() would.
+     * The caller is responsible for limiting <code>count</code> by the available fuel (ie. the applied time);
+     * this method further caps it by the input count and the free space in the output slot.
+     * @return the number of items actually smelted
+     */
+    @SuppressWarnings("unchecked")
+    public static int burn(RegistryAccess registryAccess, @Nullable RecipeHolder<?> recipe, NonNullList<ItemStack> inventory, int maxStackSize, int count, AbstractFurnaceBlockEntity furnace) {
+        if (count <= 0 || !IEverFurnaceBlockEntity.callCanBurn(registryAccess, recipe, inventory, maxStackSize, furnace)) {
+            return 0;
+        }
+
+        ItemStack inputStack = inventory.get(INPUT_SLOT);
+        ItemStack result = ((RecipeHolder<Recipe<SingleRecipeInput>>) recipe).value().assemble(new SingleRecipeInput(inputStack), registryAccess);
+        ItemStack outputStack = inventory.get(OUTPUT_SLOT);
+
+        int amount = Math.min(count, maxSmeltable(inputStack, outputStack, result));
+        if (amount <= 0) {
+            return 0;
+        }
+
+        // wet sponge + bucket is a one-time conversion of the fuel slot
+        if (inputStack.is(Blocks.WET_SPONGE.asItem()) && !inventory.get(FUEL_SLOT).isEmpty() && inventory.get(FUEL_SLOT).is(Items.BUCKET)) {
+            inventory.set(FUEL_SLOT, new ItemStack(Items.WATER_BUCKET));
+        }
+
+        if (outputStack.isEmpty()) {
+            inventory.set(OUTPUT_SLOT, result.copyWithCount(result.getCount() * amount));
+        } else {
+            outputStack.grow(result.getCount() * amount);
+        }
+        inputStack.shrink(amount);
+
+        return amount;
+    }
+
+    /**
+     * Batched equivalent of count calls to setRecipeUsed(): adds count completions of the recipe to the furnace's
+     * recipesUsed counter in one operation. The counter is what vanilla turns into experience when the output
+     * is taken, as orbs merged by ExperienceOrb.award(), so its size stays one entry per recipe however long
+     * the furnace was unloaded. Saturates rather than overflowing.
+     */
+    public static void setRecipesUsed(AbstractFurnaceBlockEntity furnace, @Nullable RecipeHolder<?> recipe, int count) {
+        if (recipe == null || count <= 0) {
+            return;
+        }
+        Object2IntOpenHashMap<ResourceLocation> recipesUsed = ((IEverFurnaceBlockEntity) furnace).getRecipesUsed();
+        recipesUsed.put(recipe.id(), (int) Math.min(Integer.MAX_VALUE, (long) recipesUsed.getInt(recipe.id()) + count));
+    }
+
+    /**
+     * The number of items that can be smelted before either the input is exhausted or the output is full,
+     * using the same stack limit that canBurn() applies to each individual item.
+     */
+    public static int maxSmeltable(ItemStack inputStack, ItemStack outputStack, ItemStack result) {
+        if (inputStack.isEmpty()) {
+            return 0;
+        }
+        return Math.min(inputStack.getCount(), outputSpace(outputStack, result));
+    }
+
+    /**
+     * The number of smelted items the output slot can still accept.
+     */
+    public static int outputSpace(ItemStack outputStack, ItemStack result) {
+        if (result.isEmpty()) {
+            return 0;
+        }
+        int space;
+        if (outputStack.isEmpty()) {
+            space = result.getMaxStackSize() / result.getCount();
+        } else if (ItemStack.isSameItemSameComponents(outputStack, result)) {
+            space = (result.getMaxStackSize() - outputStack.getCount()) / result.getCount();
+        } else {
+            space = 0;
+        }
+        return Math.max(0, space);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.furnace;
+
+import mod.gottsch.neoforge.everfurnace.core.Config;
+import mod.gottsch.neoforge.everfurnace.core.mixin.IEverFurnaceBlockEntity;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookResult;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookSimulator;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookState;
+import mod.gottsch.neoforge.everfurnace.core.stats.CatchUpStats;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.NonNullList;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.crafting.RecipeHolder;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.AbstractFurnaceBlock;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+
+import javax.annotation.Nullable;
+
+/**
+ * Applies the time elapsed while a furnace was unloaded.
+ * The work is split in three steps: resolving a FurnaceSnapshot, simulating it over the elapsed time and applying
+ * the outcome to the furnace.
+ * The simulation itself is the Minecraft-agnostic CookSimulator.
+ */
+public final class FurnaceCatchUp {
+    /** the minimum elapsed time (in ticks) worth catching up */
+    public static final int MIN_DELTA_TIME = 20;
+
+    private static final int INPUT_SLOT = 0;
+    private static final int FUEL_SLOT = 1;
+
+    private FurnaceCatchUp() {}
+
+    /**
+     * Runs the whole catch-up on the calling thread.
+     */
+    public static void run(Level level, BlockPos pos, BlockState state, AbstractFurnaceBlockEntity furnace, long deltaTime) {
+        long start = CatchUpStats.start();
+        CookResult outcome = fastForward(level, pos, state, furnace, deltaTime);
+        CatchUpStats.record(level, pos, deltaTime, outcome, start);
+    }
+
+    /**
+     * Advances the furnace by deltaTime ticks without recording a catch-up, ex. over the ticks a dormant furnace skipped.
+     */
+    public static CookResult fastForward(Level level, BlockPos pos, BlockState state, AbstractFurnaceBlockEntity furnace, long deltaTime) {
+        FurnaceSnapshot.Resolved resolved = FurnaceSnapshot.capture(furnace).resolve(level);
+        CookResult outcome = simulate(resolved, deltaTime);
+        apply(level, pos, state, furnace, resolved.recipe(), outcome);
+        return outcome;
+    }
+
+    /**
+     * Runs the catch-up of a furnace coming back from an unloaded chunk, along with its hopper chain when enabled.
+     */
+    public static void runAfterUnload(Level level, BlockPos pos, BlockState state, AbstractFurnaceBlockEntity furnace, long deltaTime) {
+        if (!Config.hopperChains || !HopperChain.run(level, pos, state, furnace, deltaTime)) {
+            run(level, pos, state, furnace, deltaTime);
+        }
+    }
+
+    /**
+     * Computes what deltaTime ticks of vanilla serverTick() would do to a lit furnace.
+     * Pure arithmetic on the resolved counts - it does not touch the furnace.
+     */
+    public static CookResult simulate(FurnaceSnapshot.Resolved furnace, long deltaTime) {
+        return CookSimulator.simulate(furnace.state(), deltaTime);
+    }
+
+    /**
+     * @see CookSimulator#ticksUntilStall(CookState)
+     */
+    public static long ticksUntilStall(FurnaceSnapshot.Resolved furnace) {
+        return CookSimulator.ticksUntilStall(furnace.state());
+    }
+
+    /**
+     * @see CookSimulator#ticksUntilOut(CookState)
+     */
+    public static long ticksUntilOut(FurnaceSnapshot.Resolved furnace) {
+        return CookSimulator.ticksUntilOut(furnace.state());
+    }
+
+    /**
+     * The number of ticks until the next tick on which vanilla would change the furnace's inventory or lit state,
+     * ie. the current item finishing or the current fuel running out.
+     * @see CookSimulator#ticksUntilNextEvent(CookState)
+     */
+    public static long ticksUntilNextEvent(FurnaceSnapshot.Resolved furnace) {
+        return CookSimulator.ticksUntilNextEvent(furnace.state());
+    }
+
+    /**
+     * Applies a simulated outcome to the furnace. Must be called on the server thread.
+     */
+    public static void apply(Level level, BlockPos pos, BlockState state, AbstractFurnaceBlockEntity furnace, @Nullable RecipeHolder<?> recipe, CookResult outcome) {
+        IEverFurnaceBlockEntity everFurnaceBlockEntity = (IEverFurnaceBlockEntity) furnace;
+        NonNullList<ItemStack> items = everFurnaceBlockEntity.getItems();
+
+        consumeFuel(items, outcome.fuelConsumed());
+
+        // smelt items
+        int smelted = FurnaceBurner.burn(level.registryAccess(), recipe, items, furnace.getMaxStackSize(), outcome.smelted(), furnace);
+        FurnaceBurner.setRecipesUsed(furnace, recipe, smelted);
+
+        updateState(level, pos, state, furnace, outcome);
+    }
+
+    /**
+     * Takes count fuel items from the fuel slot, leaving the remainder item of fuels like the lava bucket.
+     */
+    static void consumeFuel(NonNullList<ItemStack> items, int count) {
+        if (count <= 0) {
+            return;
+        }
+        ItemStack fuelStack = items.get(FUEL_SLOT);
+        if (fuelStack.hasCraftingRemainingItem()) {
+            items.set(FUEL_SLOT, fuelStack.getCraftingRemainingItem());
+        } else {
+            fuelStack.shrink(count);
+            if (fuelStack.isEmpty()) {
+                items.set(FUEL_SLOT, fuelStack.getCraftingRemainingItem());
+            }
+        }
+    }
+
+    /**
+     * Sets the burn and cooking state of the outcome once its items have been moved,
+     * and queues the block state update if the furnace went out.
+     */
+    static void updateState(Level level, BlockPos pos, BlockState state, AbstractFurnaceBlockEntity furnace, CookResult outcome) {
+        IEverFurnaceBlockEntity everFurnaceBlockEntity = (IEverFurnaceBlockEntity) furnace;
+        NonNullList<ItemStack> items = everFurnaceBlockEntity.getItems();
+
+        everFurnaceBlockEntity.setLitTime(outcome.litTime());
+        everFurnaceBlockEntity.setLitDuration(outcome.litDuration());
+        everFurnaceBlockEntity.setCookingProgress(outcome.cookingProgress());
+        // like vanilla, the total cook time is refreshed from the recipe of the remaining input after each item
+        if (items.get(INPUT_SLOT).isEmpty()) {
+            everFurnaceBlockEntity.setCookingTotalTime(AbstractFurnaceBlockEntity.BURN_TIME_STANDARD);
+        } else if (outcome.smelted() > 0) {
+            SmeltingCache.Smelting smelting = SmeltingCache.getSmelting(level, everFurnaceBlockEntity.getRecipeType(), items.get(INPUT_SLOT));
+            everFurnaceBlockEntity.setCookingTotalTime(smelting.recipe() == null ? AbstractFurnaceBlockEntity.BURN_TIME_STANDARD : smelting.cookingTime());
+        }
+
+        boolean changed = outcome.smelted() > 0 || outcome.fuelConsumed() > 0;
+        if (!outcome.isLit() && state.getValue(AbstractFurnaceBlock.LIT)) {
+            FurnaceExtinguisher.extinguish(level, pos, state);
+            changed = true;
+        } else if (outcome.isLit() && !state.getValue(AbstractFurnaceBlock.LIT)) {
+            // switched off when its chunk loaded by a prediction that did not hold, ex. after a datapack change
+            level.setBlock(pos, state.setValue(AbstractFurnaceBlock.LIT, true), Block.UPDATE_ALL);
+            changed = true;
+        }
+        // like vanilla, only mark the furnace changed when its inventory or lit state changed
+        if (changed) {
+            furnace.setChanged();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.furnace;
+
+import mod.gottsch.neoforge.everfurnace.core.Config;
+import mod.gottsch.neoforge.everfurnace.core.mixin.IAbstractFurnaceMenu;
+import mod.gottsch.neoforge.everfurnace.core.mixin.IEverFurnaceBlockEntity;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.inventory.AbstractFurnaceMenu;
+import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
+
+/**
+ * Decides how long a lit furnace may skip vanilla ticking.
+ * A dormant furnace sleeps until the tick before its next event (an item finishing, or the current fuel running out),
+ * is fast-forwarded over the skipped ticks and then lets vanilla run the event tick itself.
+ * Any inventory access wakes it early.
+ */
+public final class FurnaceDormancy {
+
+    private FurnaceDormancy() {}
+
+    /**
+     * @return the number of ticks the furnace can skip, or 0 if it must keep ticking
+     */
+    public static int sleepTicks(ServerLevel level, AbstractFurnaceBlockEntity furnace) {
+        if (!Config.dormantFurnaces || ((IEverFurnaceBlockEntity) furnace).getLitTime() <= 0 || isViewed(level, furnace)) {
+            return 0;
+        }
+        long nextEvent = FurnaceCatchUp.ticksUntilNextEvent(FurnaceSnapshot.capture(furnace).resolve(level));
+        // wake one tick early so that vanilla handles the event tick
+        long sleep = nextEvent - 1;
+        return sleep >= Config.dormantMinSleepTicks ? (int) Math.min(sleep, Integer.MAX_VALUE) : 0;
+    }
+
+    /**
+     * @return true if a player has the furnace's menu open
+     */
+    public static boolean isViewed(ServerLevel level, AbstractFurnaceBlockEntity furnace) {
+        for (ServerPlayer player : level.players()) {
+            if (player.containerMenu instanceof AbstractFurnaceMenu menu && ((IAbstractFurnaceMenu) menu).getContainer() == furnace) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.furnace;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import mod.gottsch.neoforge.everfurnace.core.EverFurnace;
+import mod.gottsch.neoforge.everfurnace.core.mixin.IEverFurnaceBlockEntity;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.AbstractFurnaceBlock;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+import net.neoforged.neoforge.event.tick.ServerTickEvent;
+
+import java.util.Map;
+
+/**
+ * Batches the lit-to-unlit block changes of furnaces that go out during catch-up.
+ * <p>
+ * Furnaces are queued from the actual outcome of their catch-up and flushed per chunk at the end of the server tick.
+ * Each chunk is looked up once and the states are set on it directly, then the neighbours get the shape updates
+ * that observers react to, with client updates only. The chunk holder merges the changes into one section update
+ * per chunk section, and the light engine processes the queued checks in one pass.
+ * Inventory changes have already notified comparators through setChanged().
+ */
+@EventBusSubscriber(modid = EverFurnace.MODID)
+public final class FurnaceExtinguisher {
+    private static final Map<ServerLevel, Long2ObjectLinkedOpenHashMap<LongArrayList>> PENDING = new Reference2ObjectOpenHashMap<>();
+
+    private FurnaceExtinguisher() {}
+
+    /**
+     * Queues the furnace to be shown unlit at the end of the tick, or switches it off now outside a server level.
+     */
+    public static void extinguish(Level level, BlockPos pos, BlockState state) {
+        if (!(level instanceof ServerLevel serverLevel)) {
+            level.setBlock(pos, state.setValue(AbstractFurnaceBlock.LIT, false), Block.UPDATE_ALL);
+            return;
+        }
+        PENDING.computeIfAbsent(serverLevel, key -> new Long2ObjectLinkedOpenHashMap<>())
+                .computeIfAbsent(ChunkPos.asLong(pos), key -> new LongArrayList())
+                .add(pos.asLong());
+    }
+
+    @SubscribeEvent
+    static void onServerTick(ServerTickEvent.Post event) {
+        if (PENDING.isEmpty()) {
+            return;
+        }
+        PENDING.forEach((level, chunks) -> chunks.forEach((chunkPos, positions) -> {
+            // unloaded since - the furnace was saved burnt out and switches its block off on its first tick after loading
+            LevelChunk chunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunkPos), ChunkPos.getZ(chunkPos));
+            if (chunk != null) {
+                flush(level, chunk, positions);
+            }
+        }));
+        PENDING.clear();
+    }
+
+    private static void flush(ServerLevel level, LevelChunk chunk, LongArrayList positions) {
+        for (int i = 0; i < positions.size(); i++) {
+            BlockPos pos = BlockPos.of(positions.getLong(i));
+            BlockState state = chunk.getBlockState(pos);
+            // skip furnaces that were removed or relit since
+            if (state.hasProperty(AbstractFurnaceBlock.LIT) && state.getValue(AbstractFurnaceBlock.LIT)
+                    && chunk.getBlockEntity(pos) instanceof AbstractFurnaceBlockEntity furnace
+                    && ((IEverFurnaceBlockEntity) furnace).getLitTime() <= 0) {
+                BlockState unlit = state.setValue(AbstractFurnaceBlock.LIT, false);
+                // also queues the light check and marks the chunk unsaved
+                chunk.setBlockState(pos, unlit, false);
+                level.getChunkSource().blockChanged(pos);
+                // lets observers see the change, as setBlock() would
+                unlit.updateNeighbourShapes(level, pos, Block.UPDATE_CLIENTS);
+            }
+        }
+    }
+
+    @SubscribeEvent
+    static void onServerStopped(ServerStoppedEvent event) {
+        PENDING.clear();
+    }
+}
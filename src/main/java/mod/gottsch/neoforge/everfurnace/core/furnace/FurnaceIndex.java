@@ -0,0 +1,203 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.furnace;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import mod.gottsch.neoforge.everfurnace.core.Config;
+import mod.gottsch.neoforge.everfurnace.core.EverFurnace;
+import mod.gottsch.neoforge.everfurnace.core.mixin.IEverFurnaceBlockEntity;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.AbstractFurnaceBlock;
+import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.saveddata.SavedData;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.level.ChunkEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Per-dimension index of the lit furnaces in unloaded chunks, keyed by chunk and then by position.
+ * Each entry holds the game time the furnace was unloaded at and the predicted game times at which it stalls
+ * (input exhausted, fuel exhausted or output full) and goes out, so pending catch-up work can be inspected without
+ * loading chunks. The entries of a chunk are replaced when it unloads and all removed when it loads again, even if
+ * the furnaces were broken or the chunk regenerated meanwhile. Furnaces predicted to have gone out are switched off
+ * before the chunk is sent to players, so they never show lit.
+ */
+@EventBusSubscriber(modid = EverFurnace.MODID)
+public class FurnaceIndex extends SavedData {
+    private static final String NAME = EverFurnace.MODID + "_index";
+    private static final String ENTRIES_TAG = "entries";
+
+    private static final SavedData.Factory<FurnaceIndex> FACTORY = new SavedData.Factory<>(FurnaceIndex::new, FurnaceIndex::load, null);
+
+    private final Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<Entry>> chunks = new Long2ObjectOpenHashMap<>();
+    private int size;
+
+    public static FurnaceIndex get(ServerLevel level) {
+        return level.getDataStorage().computeIfAbsent(FACTORY, NAME);
+    }
+
+    private static FurnaceIndex load(CompoundTag tag, HolderLookup.Provider registries) {
+        FurnaceIndex index = new FurnaceIndex();
+        // flat quadruples of (pos, lastGameTime, stallGameTime, outGameTime)
+        long[] data = tag.getLongArray(ENTRIES_TAG);
+        for (int i = 0; i + 3 < data.length; i += 4) {
+            index.chunks.computeIfAbsent(ChunkPos.asLong(BlockPos.of(data[i])), key -> new Long2ObjectOpenHashMap<>())
+                    .put(data[i], new Entry(data[i + 1], data[i + 2], data[i + 3]));
+            index.size++;
+        }
+        return index;
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag tag, HolderLookup.Provider registries) {
+        long[] data = new long[size * 4];
+        int i = 0;
+        for (Long2ObjectOpenHashMap<Entry> entries : chunks.values()) {
+            for (Long2ObjectMap.Entry<Entry> entry : entries.long2ObjectEntrySet()) {
+                data[i++] = entry.getLongKey();
+                data[i++] = entry.getValue().lastGameTime();
+                data[i++] = entry.getValue().stallGameTime();
+                data[i++] = entry.getValue().outGameTime();
+            }
+        }
+        tag.putLongArray(ENTRIES_TAG, data);
+        return tag;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return up to limit entries, ordered by the most pending catch-up time at the given game time
+     */
+    public List<Pending> getMostPending(long gameTime, int limit) {
+        List<Pending> pending = new ArrayList<>(size);
+        for (Long2ObjectOpenHashMap<Entry> entries : chunks.values()) {
+            for (Long2ObjectMap.Entry<Entry> entry : entries.long2ObjectEntrySet()) {
+                pending.add(new Pending(BlockPos.of(entry.getLongKey()), entry.getValue(), entry.getValue().pendingTime(gameTime)));
+            }
+        }
+        pending.sort(Comparator.comparingLong(Pending::pendingTime).reversed());
+        return pending.subList(0, Math.min(limit, pending.size()));
+    }
+
+    /**
+     * Replaces the entries of the chunk, or removes them if no lit furnace remains.
+     */
+    private void putChunk(long chunkKey, Long2ObjectOpenHashMap<Entry> entries) {
+        Long2ObjectOpenHashMap<Entry> previous = entries.isEmpty() ? chunks.remove(chunkKey) : chunks.put(chunkKey, entries);
+        if (previous != null) {
+            size -= previous.size();
+        }
+        size += entries.size();
+        if (previous != null || !entries.isEmpty()) {
+            setDirty();
+        }
+    }
+
+    @SubscribeEvent
+    static void onChunkUnload(ChunkEvent.Unload event) {
+        if (!(event.getLevel() instanceof ServerLevel level) || !(event.getChunk() instanceof LevelChunk chunk)) {
+            return;
+        }
+        Long2ObjectOpenHashMap<Entry> entries = new Long2ObjectOpenHashMap<>();
+        for (BlockEntity blockEntity : chunk.getBlockEntities().values()) {
+            if (blockEntity instanceof AbstractFurnaceBlockEntity furnace && ((IEverFurnaceBlockEntity) furnace).getLitTime() > 0) {
+                FurnaceSnapshot snapshot = FurnaceSnapshot.capture(furnace);
+                FurnaceSnapshot.Resolved resolved = snapshot.resolve(level);
+                long lastGameTime = snapshot.getLastGameTime();
+                // a chain may keep the furnace fuelled. checked now, while the hoppers in its chunk are still loaded
+                long outGameTime = Config.hopperChains && HopperChain.isChained(level, furnace.getBlockPos())
+                        ? Long.MAX_VALUE : lastGameTime + FurnaceCatchUp.ticksUntilOut(resolved);
+                entries.put(furnace.getBlockPos().asLong(), new Entry(lastGameTime, lastGameTime + FurnaceCatchUp.ticksUntilStall(resolved), outGameTime));
+            }
+        }
+        long chunkKey = chunk.getPos().toLong();
+        // avoids creating the saved data of a level that never had a lit furnace unloaded
+        if (!entries.isEmpty() || level.getDataStorage().get(FACTORY, NAME) != null) {
+            get(level).putChunk(chunkKey, entries);
+        }
+    }
+
+    @SubscribeEvent
+    static void onChunkLoad(ChunkEvent.Load event) {
+        if (!(event.getLevel() instanceof ServerLevel level) || !(event.getChunk() instanceof LevelChunk chunk)) {
+            return;
+        }
+        FurnaceIndex index = level.getDataStorage().get(FACTORY, NAME);
+        if (index == null) {
+            return;
+        }
+        Long2ObjectOpenHashMap<Entry> entries = index.chunks.remove(chunk.getPos().toLong());
+        if (entries == null) {
+            return;
+        }
+        index.size -= entries.size();
+        index.setDirty();
+        if (event.isNewChunk()) {
+            // regenerated, so none of the furnaces remain
+            return;
+        }
+        long gameTime = level.getGameTime();
+        for (Long2ObjectMap.Entry<Entry> entry : entries.long2ObjectEntrySet()) {
+            BlockPos pos = BlockPos.of(entry.getLongKey());
+            BlockState state = chunk.getBlockState(pos);
+            if (entry.getValue().isOut(gameTime) && chunk.getBlockEntity(pos) instanceof AbstractFurnaceBlockEntity
+                    && state.hasProperty(AbstractFurnaceBlock.LIT) && state.getValue(AbstractFurnaceBlock.LIT)) {
+                // the catch-up on its first tick will agree. also queues the light check
+                chunk.setBlockState(pos, state.setValue(AbstractFurnaceBlock.LIT, false), false);
+            }
+        }
+    }
+
+    /**
+     * @param lastGameTime the game time the furnace was unloaded at
+     * @param stallGameTime the predicted game time the furnace stops cooking
+     * @param outGameTime the predicted game time the furnace goes out, or Long.MAX_VALUE if it may be kept fuelled
+     */
+    public record Entry(long lastGameTime, long stallGameTime, long outGameTime) {
+        /**
+         * @return true if the furnace is predicted to have gone out by the game time, with enough time elapsed to be caught up
+         */
+        public boolean isOut(long gameTime) {
+            return outGameTime <= gameTime && gameTime - lastGameTime >= FurnaceCatchUp.MIN_DELTA_TIME;
+        }
+
+        /**
+         * @return the cooking time a catch-up would apply if the furnace loaded at the given game time
+         */
+        public long pendingTime(long gameTime) {
+            return Math.max(0, Math.min(gameTime, stallGameTime) - lastGameTime);
+        }
+    }
+
+    public record Pending(BlockPos pos, Entry entry, long pendingTime) {}
+}
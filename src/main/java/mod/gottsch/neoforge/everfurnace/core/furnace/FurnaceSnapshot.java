@@ -0,0 +1,108 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.furnace;
+
+import mod.gottsch.neoforge.everfurnace.core.mixin.IEverFurnaceBlockEntity;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookState;
+import net.minecraft.core.NonNullList;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.crafting.AbstractCookingRecipe;
+import net.minecraft.world.item.crafting.RecipeHolder;
+import net.minecraft.world.item.crafting.RecipeType;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
+
+import javax.annotation.Nullable;
+
+/**
+ * A detached copy of everything the catch-up needs from a furnace.
+ * A snapshot is captured and resolved on the server thread; the resolved state holds no reference
+ * to the block entity or its inventory.
+ */
+public final class FurnaceSnapshot {
+    private static final int INPUT_SLOT = 0;
+    private static final int FUEL_SLOT = 1;
+    private static final int OUTPUT_SLOT = 2;
+
+    private final ItemStack input;
+    private final ItemStack fuel;
+    private final ItemStack output;
+    private final int fuelBurnTime;
+    private final int litTime;
+    private final int litDuration;
+    private final int cookingProgress;
+    private final int cookingTotalTime;
+    private final long lastGameTime;
+    private final RecipeType<? extends AbstractCookingRecipe> recipeType;
+
+    private FurnaceSnapshot(AbstractFurnaceBlockEntity furnace) {
+        IEverFurnaceBlockEntity accessor = (IEverFurnaceBlockEntity) furnace;
+        NonNullList<ItemStack> items = accessor.getItems();
+        this.input = items.get(INPUT_SLOT).copy();
+        this.fuel = items.get(FUEL_SLOT).copy();
+        this.output = items.get(OUTPUT_SLOT).copy();
+        this.fuelBurnTime = SmeltingCache.getBurnTime(furnace, fuel);
+        this.litTime = accessor.getLitTime();
+        this.litDuration = accessor.getLitDuration();
+        this.cookingProgress = accessor.getCookingProgress();
+        this.cookingTotalTime = accessor.getCookingTotalTime();
+        this.lastGameTime = ((IEverFurnace) furnace).getEverfurnace$lastGameTime();
+        this.recipeType = accessor.getRecipeType();
+    }
+
+    public static FurnaceSnapshot capture(AbstractFurnaceBlockEntity furnace) {
+        return new FurnaceSnapshot(furnace);
+    }
+
+    /**
+     * Resolves the recipe and fuel of the snapshot into the plain counts used by the simulation.
+     * Must be called on the server thread, as recipe lookups may reach mod code.
+     */
+    public Resolved resolve(Level level) {
+        SmeltingCache.Smelting smelting = SmeltingCache.getSmelting(level, recipeType, input);
+        RecipeHolder<? extends AbstractCookingRecipe> recipe = smelting.recipe();
+        int outputSpace = recipe == null ? 0 : FurnaceBurner.outputSpace(output, smelting.result());
+
+        int fuelCount;
+        boolean fuelResidue;
+        if (fuelBurnTime <= 0) {
+            // nothing to burn, but anything left in the slot still counts as fuel being present
+            fuelCount = 0;
+            fuelResidue = !fuel.isEmpty();
+        } else if (fuel.hasCraftingRemainingItem()) {
+            // ex. lava bucket - the whole stack is replaced by its remainder
+            fuelCount = 1;
+            fuelResidue = true;
+        } else {
+            fuelCount = fuel.getCount();
+            fuelResidue = false;
+        }
+
+        return new Resolved(recipe, new CookState(input.getCount(), fuelCount, fuelBurnTime, fuelResidue,
+                litTime, litDuration, cookingProgress, cookingTotalTime, outputSpace));
+    }
+
+    public long getLastGameTime() {
+        return lastGameTime;
+    }
+
+    /**
+     * The snapshot reduced to its recipe and the plain state the simulation works on.
+     */
+    public record Resolved(@Nullable RecipeHolder<? extends AbstractCookingRecipe> recipe, CookState state) {}
+}
@@ -0,0 +1,48 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.furnace;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntityTicker;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * The server ticker of furnaces, installed by the EverAbstractFurnaceBlock mixin in place of a direct serverTick().
+ * In the steady state it reads the furnace's tick state and runs the vanilla tick, with no injection into serverTick;
+ * loading, scheduling and dormancy go through the furnace's beforeTick().
+ */
+public final class FurnaceTicker {
+    private static final BlockEntityTicker<AbstractFurnaceBlockEntity> TICKER = FurnaceTicker::tick;
+
+    private FurnaceTicker() {}
+
+    @SuppressWarnings("unchecked")
+    public static <T extends BlockEntity> BlockEntityTicker<T> get() {
+        return (BlockEntityTicker<T>) (BlockEntityTicker<?>) TICKER;
+    }
+
+    public static void tick(Level level, BlockPos pos, BlockState state, AbstractFurnaceBlockEntity furnace) {
+        IEverFurnace everFurnace = (IEverFurnace) furnace;
+        if (everFurnace.everfurnace$isTicking() || everFurnace.everfurnace$beforeTick(level, pos, state)) {
+            AbstractFurnaceBlockEntity.serverTick(level, pos, state, furnace);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.furnace;
+
+import mod.gottsch.neoforge.everfurnace.core.mixin.IEverFurnaceBlockEntity;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookResult;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookSimulator;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookState;
+import mod.gottsch.neoforge.everfurnace.core.stats.CatchUpStats;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.NonNullList;
+import net.minecraft.world.Container;
+import net.minecraft.world.WorldlyContainer;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.HopperBlock;
+import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.HopperBlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+
+import javax.annotation.Nullable;
+
+/**
+ * Catch-up for a furnace fed and drained by hoppers:
+ * <ul>
+ *     <li>an input hopper above the furnace facing down, and the container it pulls from;</li>
+ *     <li>a fuel hopper beside the furnace facing into it, and the container it pulls from;</li>
+ *     <li>a drain hopper below the furnace, and the container it pushes into.</li>
+ * </ul>
+ * A hopper moves at most one item every 8 ticks, far quicker than any vanilla recipe, so in the steady state
+ * the furnace cooks continuously and the chain only adds to its input, fuel and output capacity.
+ * Those extra counts, capped by the hopper rate, go into one simulation and the items are then moved in bulk.
+ * Only containers whose contents are all of the furnace's item are counted, as mixed contents can block a hopper.
+ */
+public final class HopperChain {
+    private static final int INPUT_SLOT = 0;
+    private static final int FUEL_SLOT = 1;
+    private static final int OUTPUT_SLOT = 2;
+
+    private HopperChain() {}
+
+    /**
+     * Runs the catch-up of the furnace and its chain.
+     * @return false if the furnace has no hopper chain, in which case nothing was changed
+     */
+    public static boolean run(Level level, BlockPos pos, BlockState state, AbstractFurnaceBlockEntity furnace, long deltaTime) {
+        long start = CatchUpStats.start();
+        FurnaceSnapshot.Resolved resolved = FurnaceSnapshot.capture(furnace).resolve(level);
+        IEverFurnaceBlockEntity accessor = (IEverFurnaceBlockEntity) furnace;
+        NonNullList<ItemStack> items = accessor.getItems();
+        ItemStack input = items.get(INPUT_SLOT);
+        ItemStack fuel = items.get(FUEL_SLOT);
+        ItemStack output = items.get(OUTPUT_SLOT);
+        if (resolved.recipe() == null || input.isEmpty()) {
+            return false;
+        }
+        ItemStack result = SmeltingCache.getSmelting(level, accessor.getRecipeType(), input).result();
+        // the input slot empties between smelting rounds, so keep the kind of item to top it up with
+        ItemStack inputKind = input.copyWithCount(1);
+
+        int transfers = (int) Math.min(deltaTime / HopperBlockEntity.MOVE_ITEM_SPEED, Integer.MAX_VALUE);
+
+        // input from above
+        HopperBlockEntity inputHopper = getHopper(level, pos.above(), Direction.DOWN);
+        Container inputSource = inputHopper == null ? null : getSource(level, pos.above(2), input);
+        int inputSupply = Math.min(transfers, supply(inputHopper, inputSource, input));
+
+        // fuel from the side. fuels with a remainder item are left to the furnace, as the drain would take the remainder
+        HopperBlockEntity fuelHopper = null;
+        for (Direction direction : Direction.Plane.HORIZONTAL) {
+            fuelHopper = getHopper(level, pos.relative(direction), direction.getOpposite());
+            if (fuelHopper != null) {
+                break;
+            }
+        }
+        int fuelSupply = 0;
+        Container fuelSource = null;
+        if (fuelHopper != null && resolved.state().fuelBurnTime() > 0 && !fuel.hasCraftingRemainingItem()) {
+            fuelSource = getSource(level, fuelHopper.getBlockPos().above(), fuel);
+            fuelSupply = Math.min(transfers, supply(fuelHopper, fuelSource, fuel));
+        }
+
+        // output below
+        HopperBlockEntity drainHopper = getHopper(level, pos.below(), null);
+        Container drainTarget = null;
+        int targetSpace = 0;
+        int drain = 0;
+        if (drainHopper != null && (output.isEmpty() || ItemStack.isSameItemSameComponents(output, result)) && onlyHolds(drainHopper, result)) {
+            drainTarget = getContainer(level, drainHopper.getBlockPos().relative(drainHopper.getBlockState().getValue(HopperBlock.FACING)));
+            targetSpace = drainTarget == null ? 0 : Math.min(transfers, space(drainTarget, result));
+            drain = Math.min(transfers, space(drainHopper, result) + targetSpace);
+        }
+
+        if (inputSupply == 0 && fuelSupply == 0 && drain == 0) {
+            return false;
+        }
+
+        CookState local = resolved.state();
+        CookState chained = new CookState(local.inputCount() + inputSupply, local.fuelCount() + fuelSupply,
+                local.fuelBurnTime(), local.fuelResidue(), local.litTime(), local.litDuration(),
+                local.cookingProgress(), local.cookingTotalTime(), local.outputSpace() + drain / result.getCount());
+        CookResult outcome = CookSimulator.simulate(chained, deltaTime);
+
+        // the chain's fuel is burnt on its way through the fuel slot, so take it from the chain and the rest from the slot
+        int fuelWanted = Math.min(fuelSupply, outcome.fuelConsumed());
+        int fuelMoved = extract(fuelSource, fuel, fuelWanted);
+        fuelMoved += extract(fuelHopper, fuel, fuelWanted - fuelMoved);
+        FurnaceCatchUp.consumeFuel(items, outcome.fuelConsumed() - fuelMoved);
+
+        // smelt in rounds, topping up the input and emptying the output into the drain between rounds.
+        // the input slot only takes what fits, anything not smelted stays in the chain
+        int inputWanted = Math.min(inputSupply, outcome.smelted());
+        int toSmelt = outcome.smelted();
+        int smelted = 0;
+        int[] budget = {drain, targetSpace};
+        drainOutput(items, drainHopper, drainTarget, budget);
+        while (toSmelt > 0) {
+            inputWanted -= topUp(items, inputKind, inputWanted, inputSource, inputHopper, furnace.getMaxStackSize());
+            int burned = FurnaceBurner.burn(level.registryAccess(), resolved.recipe(), items, furnace.getMaxStackSize(), toSmelt, furnace);
+            if (burned == 0) {
+                break;
+            }
+            toSmelt -= burned;
+            smelted += burned;
+            drainOutput(items, drainHopper, drainTarget, budget);
+        }
+        FurnaceBurner.setRecipesUsed(furnace, resolved.recipe(), smelted);
+
+        FurnaceCatchUp.updateState(level, pos, state, furnace, outcome);
+        CatchUpStats.record(level, pos, deltaTime, outcome, start);
+        return true;
+    }
+
+    /**
+     * @return true if the furnace has an input, fuel or drain hopper
+     */
+    public static boolean isChained(Level level, BlockPos pos) {
+        if (getHopper(level, pos.above(), Direction.DOWN) != null || getHopper(level, pos.below(), null) != null) {
+            return true;
+        }
+        for (Direction direction : Direction.Plane.HORIZONTAL) {
+            if (getHopper(level, pos.relative(direction), direction.getOpposite()) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param facing the direction the hopper must face, or null for any
+     * @return the enabled hopper at the position, or null
+     */
+    @Nullable
+    private static HopperBlockEntity getHopper(Level level, BlockPos pos, @Nullable Direction facing) {
+        if (!level.isLoaded(pos) || !(level.getBlockEntity(pos) instanceof HopperBlockEntity hopper)) {
+            return null;
+        }
+        BlockState state = hopper.getBlockState();
+        if (!state.getValue(HopperBlock.ENABLED) || (facing != null && state.getValue(HopperBlock.FACING) != facing)) {
+            return null;
+        }
+        return hopper;
+    }
+
+    /**
+     * @return the unsided container at the position, or null
+     */
+    @Nullable
+    private static Container getContainer(Level level, BlockPos pos) {
+        if (!level.isLoaded(pos)) {
+            return null;
+        }
+        Container container = HopperBlockEntity.getContainerAt(level, pos);
+        return container instanceof WorldlyContainer ? null : container;
+    }
+
+    /**
+     * @return the container a hopper pulls the stack's kind from, or null if there is none or it holds anything else
+     */
+    @Nullable
+    private static Container getSource(Level level, BlockPos pos, ItemStack stack) {
+        Container container = getContainer(level, pos);
+        return container != null && onlyHolds(container, stack) ? container : null;
+    }
+
+    /**
+     * The number of items of the stack's kind a hopper and its source can supply.
+     */
+    private static int supply(@Nullable HopperBlockEntity hopper, @Nullable Container source, ItemStack stack) {
+        if (hopper == null) {
+            return 0;
+        }
+        return count(hopper, stack) + (source == null ? 0 : count(source, stack));
+    }
+
+    private static int count(Container container, ItemStack stack) {
+        int count = 0;
+        for (int i = 0; i < container.getContainerSize(); i++) {
+            ItemStack slot = container.getItem(i);
+            if (ItemStack.isSameItemSameComponents(slot, stack)) {
+                count += slot.getCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The number of items of the stack's kind that fit in the container.
+     */
+    private static int space(Container container, ItemStack stack) {
+        int space = 0;
+        for (int i = 0; i < container.getContainerSize(); i++) {
+            ItemStack slot = container.getItem(i);
+            int max = Math.min(container.getMaxStackSize(stack), stack.getMaxStackSize());
+            if (slot.isEmpty()) {
+                if (container.canPlaceItem(i, stack)) {
+                    space += max;
+                }
+            } else if (ItemStack.isSameItemSameComponents(slot, stack)) {
+                space += Math.max(0, max - slot.getCount());
+            }
+        }
+        return space;
+    }
+
+    private static boolean onlyHolds(Container container, ItemStack stack) {
+        for (int i = 0; i < container.getContainerSize(); i++) {
+            ItemStack slot = container.getItem(i);
+            if (!slot.isEmpty() && !ItemStack.isSameItemSameComponents(slot, stack)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes up to count items of the stack's kind from the container.
+     * @return the number of items removed
+     */
+    private static int extract(@Nullable Container container, ItemStack stack, int count) {
+        if (container == null || count <= 0) {
+            return 0;
+        }
+        int extracted = 0;
+        for (int i = container.getContainerSize() - 1; i >= 0 && extracted < count; i--) {
+            ItemStack slot = container.getItem(i);
+            if (ItemStack.isSameItemSameComponents(slot, stack)) {
+                int taken = Math.min(count - extracted, slot.getCount());
+                slot.shrink(taken);
+                extracted += taken;
+            }
+        }
+        if (extracted > 0) {
+            container.setChanged();
+        }
+        return extracted;
+    }
+
+    /**
+     * Adds up to count copies of the stack to the container, merging into matching stacks first.
+     * @return the number of items added
+     */
+    private static int insert(@Nullable Container container, ItemStack stack, int count) {
+        if (container == null || count <= 0) {
+            return 0;
+        }
+        int max = Math.min(container.getMaxStackSize(stack), stack.getMaxStackSize());
+        int inserted = 0;
+        for (int i = 0; i < container.getContainerSize() && inserted < count; i++) {
+            ItemStack slot = container.getItem(i);
+            if (!slot.isEmpty() && ItemStack.isSameItemSameComponents(slot, stack) && slot.getCount() < max) {
+                int added = Math.min(count - inserted, max - slot.getCount());
+                slot.grow(added);
+                inserted += added;
+            }
+        }
+        for (int i = 0; i < container.getContainerSize() && inserted < count; i++) {
+            if (container.getItem(i).isEmpty() && container.canPlaceItem(i, stack)) {
+                int added = Math.min(count - inserted, max);
+                container.setItem(i, stack.copyWithCount(added));
+                inserted += added;
+            }
+        }
+        if (inserted > 0) {
+            container.setChanged();
+        }
+        return inserted;
+    }
+
+    /**
+     * Moves up to count items of the kind from the source and its hopper into the input slot,
+     * as far as they fit under the slot's max stack size.
+     * @return the number of items moved
+     */
+    private static int topUp(NonNullList<ItemStack> items, ItemStack kind, int count,
+                             @Nullable Container source, @Nullable HopperBlockEntity hopper, int maxStackSize) {
+        ItemStack input = items.get(INPUT_SLOT);
+        int wanted = Math.min(count, Math.min(kind.getMaxStackSize(), maxStackSize) - input.getCount());
+        if (wanted <= 0) {
+            return 0;
+        }
+        int moved = extract(source, kind, wanted);
+        moved += extract(hopper, kind, wanted - moved);
+        if (input.isEmpty()) {
+            items.set(INPUT_SLOT, kind.copyWithCount(moved));
+        } else {
+            input.grow(moved);
+        }
+        return moved;
+    }
+
+    /**
+     * Moves the furnace output downstream, filling the drain's target before the drain hopper itself.
+     * @param budget the remaining items the drain may take and, of those, the remaining items the target may take
+     */
+    private static void drainOutput(NonNullList<ItemStack> items, @Nullable HopperBlockEntity hopper, @Nullable Container target, int[] budget) {
+        ItemStack output = items.get(OUTPUT_SLOT);
+        if (hopper == null || output.isEmpty() || budget[0] <= 0) {
+            return;
+        }
+        int toTarget = insert(target, output, Math.min(output.getCount(), Math.min(budget[0], budget[1])));
+        budget[1] -= toTarget;
+        int toHopper = insert(hopper, output, Math.min(output.getCount() - toTarget, budget[0] - toTarget));
+        budget[0] -= toTarget + toHopper;
+        output.shrink(toTarget + toHopper);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.furnace;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * Implemented by AbstractFurnaceBlockEntity via the EverFurnaceBlockEntity mixin
+ * so that non-mixin code can reach the EverFurnace state of a furnace.
+ */
+public interface IEverFurnace {
+
+    /**
+     * @return the game time the furnace's state corresponds to - the last tick of its chunk while it is ticking normally
+     */
+    long getEverfurnace$lastGameTime();
+
+    void setEverfurnace$lastGameTime(long lastGameTime);
+
+    /**
+     * @return true if the furnace is ticking normally and the FurnaceTicker can run the vanilla tick right away
+     */
+    boolean everfurnace$isTicking();
+
+    /**
+     * Handles a tick of a furnace that is not ticking normally: catch-up after loading, scheduling and dormancy.
+     * @return true if the vanilla tick should run
+     */
+    boolean everfurnace$beforeTick(Level level, BlockPos pos, BlockState state);
+
+    /**
+     * @return true if the furnace is waiting in the CatchUpScheduler and must not tick
+     */
+    boolean everfurnace$isScheduled();
+
+    /**
+     * Flags the furnace as scheduled, or releases it to be checked for catch-up again on its next tick.
+     */
+    void everfurnace$setScheduled(boolean scheduled);
+
+    /**
+     * Applies all the time elapsed since the last game time and clears the scheduled flag.
+     */
+    void everfurnace$catchUp();
+}
@@ -0,0 +1,31 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.furnace;
+
+/**
+ * A block entity that catches up the time its chunk stayed loaded without ticking,
+ * ex. outside the simulation distance or in a level without players.
+ */
+public interface IResumable {
+
+    /**
+     * Called when the block entity's chunk ticks again after a gap.
+     * @param lastGameTime the game time the block entity's state corresponds to, before the gap
+     */
+    void everfurnace$resume(long lastGameTime);
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.furnace;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import mod.gottsch.neoforge.everfurnace.core.EverFurnace;
+import mod.gottsch.neoforge.everfurnace.core.mixin.IEverFurnaceBlockEntity;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.crafting.AbstractCookingRecipe;
+import net.minecraft.world.item.crafting.RecipeHolder;
+import net.minecraft.world.item.crafting.RecipeType;
+import net.minecraft.world.item.crafting.SingleRecipeInput;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntityType;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.TagsUpdatedEvent;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide recipe and fuel lookups shared by every furnace catch-up, keyed by recipe type (or block entity type
+ * for fuels) and item identity.
+ * Reads are lock-free: each map is copied on write and published through a volatile field, which suits
+ * the handful of distinct items a server smelts. Stacks with data components bypass the cache, as their
+ * recipe or burn time may depend on those components.
+ * Cleared whenever datapacks or tags are reloaded.
+ */
+@EventBusSubscriber(modid = EverFurnace.MODID)
+public final class SmeltingCache {
+    private static final Object LOCK = new Object();
+
+    private static volatile Reference2ObjectOpenHashMap<RecipeType<?>, Reference2ObjectOpenHashMap<Item, Smelting>> recipes = new Reference2ObjectOpenHashMap<>();
+    private static volatile Reference2ObjectOpenHashMap<BlockEntityType<?>, Reference2IntOpenHashMap<Item>> burnTimes = new Reference2ObjectOpenHashMap<>();
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    private SmeltingCache() {}
+
+    /**
+     * @return the cooking recipe for the input stack, or Smelting.NONE if there is none
+     */
+    public static Smelting getSmelting(Level level, RecipeType<? extends AbstractCookingRecipe> recipeType, ItemStack input) {
+        if (input.isEmpty()) {
+            return Smelting.NONE;
+        }
+        if (!input.isComponentsPatchEmpty()) {
+            MISSES.increment();
+            return lookup(level, recipeType, input);
+        }
+
+        Reference2ObjectOpenHashMap<Item, Smelting> byItem = recipes.get(recipeType);
+        Smelting smelting = byItem == null ? null : byItem.get(input.getItem());
+        if (smelting != null) {
+            HITS.increment();
+            return smelting;
+        }
+
+        MISSES.increment();
+        smelting = lookup(level, recipeType, input);
+        synchronized (LOCK) {
+            Reference2ObjectOpenHashMap<RecipeType<?>, Reference2ObjectOpenHashMap<Item, Smelting>> copy = new Reference2ObjectOpenHashMap<>(recipes);
+            Reference2ObjectOpenHashMap<Item, Smelting> byItemCopy = new Reference2ObjectOpenHashMap<>(copy.getOrDefault(recipeType, new Reference2ObjectOpenHashMap<>()));
+            byItemCopy.put(input.getItem(), smelting);
+            copy.put(recipeType, byItemCopy);
+            recipes = copy;
+        }
+        return smelting;
+    }
+
+    /**
+     * @return the burn time of one item of the fuel stack in the furnace, or 0 if it is not a fuel
+     */
+    public static int getBurnTime(AbstractFurnaceBlockEntity furnace, ItemStack fuel) {
+        if (fuel.isEmpty()) {
+            return 0;
+        }
+        // asked from the furnace itself, as blast furnaces and smokers burn their fuel twice as fast
+        IEverFurnaceBlockEntity accessor = (IEverFurnaceBlockEntity) furnace;
+        if (!fuel.isComponentsPatchEmpty()) {
+            MISSES.increment();
+            return accessor.callGetBurnDuration(fuel);
+        }
+
+        BlockEntityType<?> type = furnace.getType();
+        Reference2IntOpenHashMap<Item> byItem = burnTimes.get(type);
+        if (byItem != null && byItem.containsKey(fuel.getItem())) {
+            HITS.increment();
+            return byItem.getInt(fuel.getItem());
+        }
+
+        MISSES.increment();
+        int burnTime = accessor.callGetBurnDuration(fuel);
+        synchronized (LOCK) {
+            Reference2ObjectOpenHashMap<BlockEntityType<?>, Reference2IntOpenHashMap<Item>> copy = new Reference2ObjectOpenHashMap<>(burnTimes);
+            Reference2IntOpenHashMap<Item> byItemCopy = new Reference2IntOpenHashMap<>(copy.getOrDefault(type, new Reference2IntOpenHashMap<>()));
+            byItemCopy.put(fuel.getItem(), burnTime);
+            copy.put(type, byItemCopy);
+            burnTimes = copy;
+        }
+        return burnTime;
+    }
+
+    private static Smelting lookup(Level level, RecipeType<? extends AbstractCookingRecipe> recipeType, ItemStack input) {
+        SingleRecipeInput recipeInput = new SingleRecipeInput(input);
+        RecipeHolder<? extends AbstractCookingRecipe> recipe = level.getRecipeManager().getRecipeFor(recipeType, recipeInput, level).orElse(null);
+        if (recipe == null) {
+            return Smelting.NONE;
+        }
+        return new Smelting(recipe, recipe.value().getCookingTime(), recipe.value().assemble(recipeInput, level.registryAccess()));
+    }
+
+    public static void clear() {
+        synchronized (LOCK) {
+            recipes = new Reference2ObjectOpenHashMap<>();
+            burnTimes = new Reference2ObjectOpenHashMap<>();
+        }
+    }
+
+    public static long getHits() {
+        return HITS.sum();
+    }
+
+    public static long getMisses() {
+        return MISSES.sum();
+    }
+
+    @SubscribeEvent
+    static void onTagsUpdated(TagsUpdatedEvent event) {
+        clear();
+    }
+
+    @SubscribeEvent
+    static void onServerStopped(ServerStoppedEvent event) {
+        clear();
+        HITS.reset();
+        MISSES.reset();
+    }
+
+    /**
+     * A resolved cooking recipe. The result is shared and must not be modified.
+     */
+    public record Smelting(@Nullable RecipeHolder<? extends AbstractCookingRecipe> recipe, int cookingTime, ItemStack result) {
+        public static final Smelting NONE = new Smelting(null, 0, ItemStack.EMPTY);
+    }
+}
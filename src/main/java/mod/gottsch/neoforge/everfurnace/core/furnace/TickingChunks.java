@@ -0,0 +1,132 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.furnace;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import mod.gottsch.neoforge.everfurnace.core.EverFurnace;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.FullChunkStatus;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.level.ChunkEvent;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+
+import java.util.Map;
+
+/**
+ * The game time each chunk holding a catch-up block entity last ticked its block entities.
+ * <p>
+ * A chunk can stay loaded without ticking, so a block entity that is ticking normally is only as current as its chunk.
+ * Instead of every block entity recording the time of its own ticks, each chunk is stamped once per level tick,
+ * after the level has ticked its block entities. Block entities read the stamp when they are saved or removed,
+ * and a chunk that ticks again after a gap resumes its block entities, which then catch up like after an unload.
+ */
+@EventBusSubscriber(modid = EverFurnace.MODID)
+public final class TickingChunks {
+    private static final Map<ServerLevel, Long2LongOpenHashMap> LAST_TICKED = new Reference2ObjectOpenHashMap<>();
+
+    private TickingChunks() {}
+
+    /**
+     * Tracks the chunk of a block entity on its first tick.
+     */
+    public static void track(Level level, BlockPos pos) {
+        if (level instanceof ServerLevel serverLevel) {
+            LAST_TICKED.computeIfAbsent(serverLevel, key -> new Long2LongOpenHashMap())
+                    .putIfAbsent(ChunkPos.asLong(pos), level.getGameTime());
+        }
+    }
+
+    /**
+     * @return the game time the chunk of the position last ticked its block entities,
+     * or the level's game time if the chunk is not tracked
+     */
+    public static long getLastTicked(Level level, BlockPos pos) {
+        Long2LongOpenHashMap chunks = LAST_TICKED.get(level);
+        long chunkPos = ChunkPos.asLong(pos);
+        return chunks != null && chunks.containsKey(chunkPos) ? chunks.get(chunkPos) : level.getGameTime();
+    }
+
+    /**
+     * Stamps the tracked chunks whose block entities were just ticked, with the same checks as vanilla's
+     * block entity ticking, and drops the chunks that have unloaded.
+     * Called by the EverLevel mixin at the end of tickBlockEntities().
+     */
+    public static void onBlockEntitiesTicked(ServerLevel level) {
+        Long2LongOpenHashMap chunks = LAST_TICKED.get(level);
+        if (chunks == null || chunks.isEmpty()) {
+            return;
+        }
+        long gameTime = level.getGameTime();
+        ObjectIterator<Long2LongMap.Entry> iterator = chunks.long2LongEntrySet().fastIterator();
+        while (iterator.hasNext()) {
+            Long2LongMap.Entry entry = iterator.next();
+            long chunkPos = entry.getLongKey();
+            LevelChunk chunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunkPos), ChunkPos.getZ(chunkPos));
+            if (chunk == null) {
+                iterator.remove();
+                continue;
+            }
+            if (!level.shouldTickBlocksAt(chunkPos) || !chunk.getFullStatus().isOrAfter(FullChunkStatus.BLOCK_TICKING)
+                    || !level.areEntitiesLoaded(chunkPos)) {
+                continue;
+            }
+            long lastTicked = entry.getLongValue();
+            if (gameTime - lastTicked > 1) {
+                // this tick has already run on the state from before the gap
+                resume(chunk, lastTicked + 1);
+            }
+            entry.setValue(gameTime);
+        }
+    }
+
+    private static void resume(LevelChunk chunk, long lastGameTime) {
+        for (BlockEntity blockEntity : chunk.getBlockEntities().values()) {
+            if (blockEntity instanceof IResumable resumable) {
+                resumable.everfurnace$resume(lastGameTime);
+            }
+        }
+    }
+
+    /**
+     * A chunk can unload and load again while its level is not ticking block entities, before its stamp is dropped.
+     * Its block entities are all new and caught up on their first tick, so the stale stamp is dropped here.
+     */
+    @SubscribeEvent
+    static void onChunkLoad(ChunkEvent.Load event) {
+        if (event.getLevel() instanceof ServerLevel level) {
+            Long2LongOpenHashMap chunks = LAST_TICKED.get(level);
+            if (chunks != null) {
+                chunks.remove(event.getChunk().getPos().toLong());
+            }
+        }
+    }
+
+    @SubscribeEvent
+    static void onServerStopped(ServerStoppedEvent event) {
+        LAST_TICKED.clear();
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.gametest;
+
+import com.mojang.logging.LogUtils;
+import mod.gottsch.neoforge.everfurnace.core.Config;
+import mod.gottsch.neoforge.everfurnace.core.EverFurnace;
+import mod.gottsch.neoforge.everfurnace.core.furnace.FurnaceTicker;
+import mod.gottsch.neoforge.everfurnace.core.mixin.IEverFurnaceBlockEntity;
+import mod.gottsch.neoforge.everfurnace.core.stats.CatchUpStats;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.gametest.framework.GameTest;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.Container;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.level.block.AbstractFurnaceBlock;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.HopperBlock;
+import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.neoforged.neoforge.gametest.GameTestHolder;
+import net.neoforged.neoforge.gametest.PrefixGameTestTemplate;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Load scenarios for large furnace arrays. Run headless with "gradlew runGameTestServer".
+ * <p>
+ * An unload is simulated by saving each furnace and loading it back with its last game time shifted into the past,
+ * which is what the block entity sees when its chunk is reloaded after that much time.
+ * Each scenario checks the smelting results and logs the catch-up cost and the average server tick time.
+ */
+@GameTestHolder(EverFurnace.MODID)
+@PrefixGameTestTemplate(false)
+public class FurnaceLoadTests {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final String LAST_GAME_TIME_TAG = EverFurnace.MODID + "_lastGameTime";
+    private static final String TEMPLATE = "empty";
+    // the empty template is 48 x 6 x 48, ie. 9 chunks when aligned
+    private static final int AREA = 48;
+
+    private static final int INPUT_SLOT = 0;
+    private static final int FUEL_SLOT = 1;
+    private static final int OUTPUT_SLOT = 2;
+
+    private static final int SMELT_TIME = 200;
+    private static final int FAST_SMELT_TIME = 100;
+    private static final int COAL_BURN_TIME = 1600;
+
+    /**
+     * 500 lit furnaces, each with a full stack to smelt and one more piece of coal, reloaded after the time it would take
+     * to smelt the stack. The coal runs out part way through the 16th item, so each furnace must end with exactly
+     * 15 items smelted, no fuel, its progress cooled down to 0 and its block switched off.
+     */
+    @GameTest(template = TEMPLATE, timeoutTicks = 400)
+    public static void litFurnaceArray(GameTestHelper helper) {
+        List<BlockPos> furnaces = new ArrayList<>();
+        for (int x = 0; x < AREA && furnaces.size() < 500; x += 2) {
+            for (int z = 0; z < AREA && furnaces.size() < 500; z += 2) {
+                BlockPos pos = new BlockPos(x, 1, z);
+                lightFurnace(helper, pos, Blocks.FURNACE, new ItemStack(Items.RAW_IRON, 64), 1, SMELT_TIME);
+                furnaces.add(pos);
+            }
+        }
+        Run run = reload(helper, furnaces, 64L * SMELT_TIME);
+
+        helper.succeedWhen(() -> {
+            for (BlockPos pos : furnaces) {
+                AbstractFurnaceBlockEntity furnace = helper.getBlockEntity(pos);
+                IEverFurnaceBlockEntity accessor = (IEverFurnaceBlockEntity) furnace;
+                assertStack(helper, pos, furnace.getItem(INPUT_SLOT), Items.RAW_IRON, 49);
+                assertStack(helper, pos, furnace.getItem(OUTPUT_SLOT), Items.IRON_INGOT, 15);
+                helper.assertTrue(furnace.getItem(FUEL_SLOT).isEmpty(), "fuel left at " + pos);
+                helper.assertTrue(accessor.getLitTime() == 0, "still burning at " + pos);
+                helper.assertTrue(accessor.getCookingProgress() == 0, "progress " + accessor.getCookingProgress() + " at " + pos);
+                helper.assertBlockProperty(pos, AbstractFurnaceBlock.LIT, false);
+            }
+            run.log(helper, "litFurnaceArray");
+        });
+    }
+
+    /**
+     * A furnace part way through its fuel, reloaded after 5 items and a quarter, then ticked once through the FurnaceTicker.
+     * The catch-up runs on that tick, followed by the vanilla tick, so the exact state is known right away.
+     */
+    @GameTest(template = TEMPLATE)
+    public static void partialCatchUp(GameTestHelper helper) {
+        BlockPos pos = new BlockPos(1, 1, 1);
+        lightFurnace(helper, pos, Blocks.FURNACE, new ItemStack(Items.RAW_IRON, 64), 8, SMELT_TIME);
+        AbstractFurnaceBlockEntity furnace = helper.getBlockEntity(pos);
+        IEverFurnaceBlockEntity accessor = (IEverFurnaceBlockEntity) furnace;
+        accessor.setLitTime(400);
+        // below catchUp.scheduleThreshold, so it is not queued. the coal is refuelled once, at tick 400
+        reload(helper, List.of(pos), 5L * SMELT_TIME + 50);
+
+        FurnaceTicker.tick(helper.getLevel(), helper.absolutePos(pos), furnace.getBlockState(), furnace);
+
+        assertStack(helper, pos, furnace.getItem(INPUT_SLOT), Items.RAW_IRON, 59);
+        assertStack(helper, pos, furnace.getItem(OUTPUT_SLOT), Items.IRON_INGOT, 5);
+        assertStack(helper, pos, furnace.getItem(FUEL_SLOT), Items.COAL, 7);
+        helper.assertTrue(accessor.getCookingProgress() == 51, "expected progress 51 but found " + accessor.getCookingProgress());
+        helper.assertTrue(accessor.getLitTime() == 949, "expected lit time 949 but found " + accessor.getLitTime());
+        helper.succeed();
+    }
+
+    /**
+     * Rows of furnaces, blast furnaces and smokers, plus one hopper-fed and hopper-drained column of each,
+     * with catchUp.hopperChains enabled for the duration of the test.
+     * The plain rows must smelt their whole stack. The hopper columns must conserve their items, smelt the chest above
+     * as well as their own input slot, and have drained everything they smelted into the hopper and chest below.
+     */
+    @GameTest(template = TEMPLATE, timeoutTicks = 400)
+    public static void mixedFurnaceArrays(GameTestHelper helper) {
+        boolean hopperChains = Config.hopperChains;
+        Config.hopperChains = true;
+        Kind[] kinds = {
+                new Kind(Blocks.FURNACE, Items.RAW_IRON, Items.IRON_INGOT, SMELT_TIME),
+                new Kind(Blocks.BLAST_FURNACE, Items.RAW_GOLD, Items.GOLD_INGOT, FAST_SMELT_TIME),
+                new Kind(Blocks.SMOKER, Items.BEEF, Items.COOKED_BEEF, FAST_SMELT_TIME)
+        };
+        long deltaTime = 64L * SMELT_TIME;
+
+        List<BlockPos> furnaces = new ArrayList<>();
+        List<BlockPos> chained = new ArrayList<>();
+        for (int k = 0; k < kinds.length; k++) {
+            Kind kind = kinds[k];
+            int z = k * 16;
+            for (int x = 0; x < 40; x += 2) {
+                BlockPos pos = new BlockPos(x, 2, z);
+                lightFurnace(helper, pos, kind.block(), new ItemStack(kind.input(), 64), 8, kind.smeltTime());
+                furnaces.add(pos);
+            }
+            // chest -> hopper -> furnace -> hopper -> chest
+            BlockPos pos = new BlockPos(44, 2, z);
+            lightFurnace(helper, pos, kind.block(), new ItemStack(kind.input(), 16), 8, kind.smeltTime());
+            helper.setBlock(pos.above(), Blocks.HOPPER.defaultBlockState().setValue(HopperBlock.FACING, Direction.DOWN));
+            helper.setBlock(pos.above(2), Blocks.CHEST);
+            helper.setBlock(pos.below(), Blocks.HOPPER.defaultBlockState().setValue(HopperBlock.FACING, Direction.DOWN));
+            helper.setBlock(pos.below(2), Blocks.CHEST);
+            ((Container) helper.getBlockEntity(pos.above(2))).setItem(0, new ItemStack(kind.input(), 64));
+            furnaces.add(pos);
+            chained.add(pos);
+        }
+        Run run = reload(helper, furnaces, deltaTime);
+
+        helper.succeedWhen(() -> {
+            for (BlockPos pos : furnaces) {
+                AbstractFurnaceBlockEntity furnace = helper.getBlockEntity(pos);
+                Kind kind = kinds[pos.getZ() / 16];
+                if (chained.contains(pos)) {
+                    int inputs = count(helper, pos, kind.input());
+                    int results = count(helper, pos, kind.result());
+                    int drained = count((Container) helper.getBlockEntity(pos.below()), kind.result())
+                            + count((Container) helper.getBlockEntity(pos.below(2)), kind.result());
+                    helper.assertTrue(inputs + results == 80, "items lost or duplicated at " + pos + ": " + inputs + " + " + results);
+                    // the furnaces smelt 64 in the elapsed time and the faster kinds 79 before their coal runs out,
+                    // while without the chain only the 16 in the input slot would be caught up
+                    helper.assertTrue(results >= 64, "only " + results + " smelted at " + pos);
+                    helper.assertTrue(drained == results, "only " + drained + " of " + results + " drained at " + pos);
+                } else {
+                    assertStack(helper, pos, furnace.getItem(OUTPUT_SLOT), kind.result(), 64);
+                }
+            }
+            Config.hopperChains = hopperChains;
+            run.log(helper, "mixedFurnaceArrays");
+        });
+    }
+
+    /**
+     * A furnace that burnt out while unloaded, ex. rewritten by the offline FastForward tool, and was saved with its block lit.
+     * Vanilla only updates the block when the furnace goes out while ticking, so the catch-up must switch it off.
+     */
+    @GameTest(template = TEMPLATE)
+    public static void burntOutFurnaceIsExtinguished(GameTestHelper helper) {
+        BlockPos pos = new BlockPos(1, 1, 1);
+        helper.setBlock(pos, Blocks.FURNACE.defaultBlockState().setValue(AbstractFurnaceBlock.LIT, true));
+        AbstractFurnaceBlockEntity furnace = helper.getBlockEntity(pos);
+        furnace.setItem(INPUT_SLOT, new ItemStack(Items.RAW_IRON, 8));
+        furnace.setItem(OUTPUT_SLOT, new ItemStack(Items.IRON_INGOT, 8));
+        reload(helper, List.of(pos), 16L * SMELT_TIME);
+
+        helper.succeedWhen(() -> {
+            helper.assertBlockProperty(pos, AbstractFurnaceBlock.LIT, false);
+            assertStack(helper, pos, furnace.getItem(INPUT_SLOT), Items.RAW_IRON, 8);
+        });
+    }
+
+    /**
+     * Places a furnace that has just taken a piece of coal, with more in its fuel slot.
+     */
+    private static void lightFurnace(GameTestHelper helper, BlockPos pos, Block block, ItemStack input, int coal, int smeltTime) {
+        helper.setBlock(pos, block.defaultBlockState().setValue(AbstractFurnaceBlock.LIT, true));
+        AbstractFurnaceBlockEntity furnace = helper.getBlockEntity(pos);
+        furnace.setItem(INPUT_SLOT, input);
+        furnace.setItem(FUEL_SLOT, new ItemStack(Items.COAL, coal));
+        IEverFurnaceBlockEntity accessor = (IEverFurnaceBlockEntity) furnace;
+        accessor.setLitTime(COAL_BURN_TIME);
+        accessor.setLitDuration(COAL_BURN_TIME);
+        accessor.setCookingProgress(0);
+        accessor.setCookingTotalTime(smeltTime);
+    }
+
+    /**
+     * Saves each furnace and loads it back as if its chunk had been unloaded for deltaTime ticks.
+     */
+    private static Run reload(GameTestHelper helper, List<BlockPos> furnaces, long deltaTime) {
+        Run run = new Run(furnaces.size(), CatchUpStats.getCount(), CatchUpStats.getTotalNanos(), System.nanoTime());
+        for (BlockPos pos : furnaces) {
+            BlockEntity furnace = helper.getBlockEntity(pos);
+            CompoundTag tag = furnace.saveWithoutMetadata(helper.getLevel().registryAccess());
+            // may be negative early in a new world, which the catch-up handles like any other time
+            tag.putLong(LAST_GAME_TIME_TAG, helper.getLevel().getGameTime() - deltaTime);
+            furnace.loadWithComponents(tag, helper.getLevel().registryAccess());
+        }
+        return run;
+    }
+
+    /**
+     * The number of items of the kind in the furnace and the chain of containers above and below it.
+     */
+    private static int count(GameTestHelper helper, BlockPos pos, Item item) {
+        int count = 0;
+        for (int dy = -2; dy <= 2; dy++) {
+            count += count((Container) helper.getBlockEntity(pos.above(dy)), item);
+        }
+        return count;
+    }
+
+    private static int count(Container container, Item item) {
+        int count = 0;
+        for (int i = 0; i < container.getContainerSize(); i++) {
+            if (container.getItem(i).is(item)) {
+                count += container.getItem(i).getCount();
+            }
+        }
+        return count;
+    }
+
+    private static void assertStack(GameTestHelper helper, BlockPos pos, ItemStack stack, Item item, int count) {
+        helper.assertTrue(stack.is(item) && stack.getCount() == count,
+                "expected " + count + " " + item + " at " + pos + " but found " + stack);
+    }
+
+    private record Kind(Block block, Item input, Item result, int smeltTime) {}
+
+    /**
+     * The catch-up counters when a scenario reloaded its furnaces.
+     */
+    private record Run(int furnaces, long count, long nanos, long start) {
+        void log(GameTestHelper helper, String scenario) {
+            LOGGER.info("{}: {} furnaces, {} catch-ups costing {} µs, done in {} ms, average tick {} ms",
+                    scenario, furnaces, CatchUpStats.getCount() - count, (CatchUpStats.getTotalNanos() - nanos) / 1000,
+                    (System.nanoTime() - start) / 1_000_000, helper.getLevel().getServer().getAverageTickTimeNanos() / 1_000_000.0);
+        }
+    }
+}
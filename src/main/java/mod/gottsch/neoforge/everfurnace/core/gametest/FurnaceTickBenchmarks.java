@@ -0,0 +1,245 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.gametest;
+
+import com.mojang.logging.LogUtils;
+import mod.gottsch.neoforge.everfurnace.core.Config;
+import mod.gottsch.neoforge.everfurnace.core.EverFurnace;
+import mod.gottsch.neoforge.everfurnace.core.furnace.FurnaceBurner;
+import mod.gottsch.neoforge.everfurnace.core.furnace.FurnaceTicker;
+import mod.gottsch.neoforge.everfurnace.core.furnace.IEverFurnace;
+import mod.gottsch.neoforge.everfurnace.core.furnace.SmeltingCache;
+import mod.gottsch.neoforge.everfurnace.core.mixin.IEverFurnaceBlockEntity;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.NonNullList;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.gametest.framework.GameTest;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.crafting.RecipeHolder;
+import net.minecraft.world.level.block.AbstractFurnaceBlock;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
+import net.neoforged.fml.loading.FMLPaths;
+import net.neoforged.neoforge.gametest.GameTestHolder;
+import net.neoforged.neoforge.gametest.PrefixGameTestTemplate;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Benchmarks of the real furnace paths, which need a running server with its registries and the mixins applied.
+ * Run headless with "gradlew runGameTestServer".
+ * <p>
+ * Each benchmark repeats its measurement in rounds, the first half of which only warm up the JIT,
+ * logs the average of the rest and writes it to everfurnace-benchmarks/&lt;benchmark&gt;.json in the game directory.
+ * The server thread is shared with the other tests of the batch, so compare results of the same run configuration.
+ */
+@GameTestHolder(EverFurnace.MODID)
+@PrefixGameTestTemplate(false)
+public class FurnaceTickBenchmarks {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final String TEMPLATE = "empty";
+    private static final BlockPos FURNACE = new BlockPos(1, 1, 1);
+
+    private static final int INPUT_SLOT = 0;
+    private static final int FUEL_SLOT = 1;
+    private static final int OUTPUT_SLOT = 2;
+
+    private static final int SMELT_TIME = 200;
+    private static final int COAL_BURN_TIME = 1600;
+
+    private static final int ROUNDS = 10;
+    // less than the 64 * 200 ticks it takes to smelt the stack, so the furnace cooks through every round
+    private static final int TICKS = 10_000;
+    private static final int CATCH_UPS = 2_000;
+
+    /**
+     * A lit furnace between events, with dormancy off: one tick through the FurnaceTicker the mod installs, while the
+     * furnace is TICKING, against one direct vanilla serverTick(), which the mod does not inject into.
+     * The two are timed in alternating halves of each round, on the same furnace state.
+     */
+    @GameTest(template = TEMPLATE, timeoutTicks = 100)
+    public static void steadyStateTick(GameTestHelper helper) {
+        boolean dormantFurnaces = Config.dormantFurnaces;
+        Config.dormantFurnaces = false;
+        try {
+            AbstractFurnaceBlockEntity furnace = placeFurnace(helper);
+            ServerLevel level = helper.getLevel();
+            BlockPos pos = helper.absolutePos(FURNACE);
+            IEverFurnace everFurnace = (IEverFurnace) furnace;
+            // a new furnace has no last game time; pin it so that its first tick does not catch up
+            everFurnace.setEverfurnace$lastGameTime(level.getGameTime());
+            FurnaceTicker.tick(level, pos, furnace.getBlockState(), furnace);
+            helper.assertTrue(everFurnace.everfurnace$isTicking(), "the furnace is not ticking normally");
+
+            long ticker = 0;
+            long vanilla = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                relight(furnace);
+                long start = System.nanoTime();
+                for (int i = 0; i < TICKS; i++) {
+                    FurnaceTicker.tick(level, pos, furnace.getBlockState(), furnace);
+                }
+                long tickerNanos = System.nanoTime() - start;
+
+                relight(furnace);
+                start = System.nanoTime();
+                for (int i = 0; i < TICKS; i++) {
+                    AbstractFurnaceBlockEntity.serverTick(level, pos, furnace.getBlockState(), furnace);
+                }
+                long vanillaNanos = System.nanoTime() - start;
+
+                if (round >= ROUNDS / 2) {
+                    ticker += tickerNanos;
+                    vanilla += vanillaNanos;
+                }
+            }
+            helper.assertTrue(everFurnace.everfurnace$isTicking(), "the furnace left the ticking state");
+            helper.assertTrue(!furnace.getItem(OUTPUT_SLOT).isEmpty(), "the furnace did not smelt while ticked");
+
+            long ops = (long) (ROUNDS - ROUNDS / 2) * TICKS;
+            List<Result> results = List.of(
+                    new Result("furnaceTicker", 1, (double) ticker / ops),
+                    new Result("vanillaTick", 1, (double) vanilla / ops));
+            publish("steadyStateTick", results);
+            helper.succeed();
+        } finally {
+            Config.dormantFurnaces = dormantFurnaces;
+        }
+    }
+
+    /**
+     * Smelting the items of a catch-up: one vanilla burn() per item, as before batching, against one batched burn.
+     */
+    @GameTest(template = TEMPLATE, timeoutTicks = 100)
+    public static void burnLoop(GameTestHelper helper) {
+        AbstractFurnaceBlockEntity furnace = placeFurnace(helper);
+        IEverFurnaceBlockEntity accessor = (IEverFurnaceBlockEntity) furnace;
+        RegistryAccess registryAccess = helper.getLevel().registryAccess();
+        RecipeHolder<?> recipe = SmeltingCache.getSmelting(helper.getLevel(), accessor.getRecipeType(), new ItemStack(Items.RAW_IRON)).recipe();
+        helper.assertTrue(recipe != null, "no smelting recipe for raw iron");
+        NonNullList<ItemStack> items = accessor.getItems();
+        int maxStackSize = furnace.getMaxStackSize();
+
+        List<Result> results = new ArrayList<>();
+        for (int count : new int[] {1, 16, 64}) {
+            long perItem = 0;
+            long batched = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < CATCH_UPS; i++) {
+                    refill(items, count);
+                    for (int n = 0; n < count; n++) {
+                        IEverFurnaceBlockEntity.callBurn(registryAccess, recipe, items, maxStackSize, furnace);
+                    }
+                }
+                long perItemNanos = System.nanoTime() - start;
+                assertSmelted(helper, items, count);
+
+                start = System.nanoTime();
+                for (int i = 0; i < CATCH_UPS; i++) {
+                    refill(items, count);
+                    FurnaceBurner.burn(registryAccess, recipe, items, maxStackSize, count, furnace);
+                }
+                long batchedNanos = System.nanoTime() - start;
+                assertSmelted(helper, items, count);
+
+                if (round >= ROUNDS / 2) {
+                    perItem += perItemNanos;
+                    batched += batchedNanos;
+                }
+            }
+            long ops = (long) (ROUNDS - ROUNDS / 2) * CATCH_UPS;
+            results.add(new Result("perItemBurn", count, (double) perItem / ops));
+            results.add(new Result("batchedBurn", count, (double) batched / ops));
+        }
+        publish("burnLoop", results);
+        helper.succeed();
+    }
+
+    /**
+     * Places a lit furnace with a stack of raw iron and coal.
+     */
+    private static AbstractFurnaceBlockEntity placeFurnace(GameTestHelper helper) {
+        helper.setBlock(FURNACE, Blocks.FURNACE.defaultBlockState().setValue(AbstractFurnaceBlock.LIT, true));
+        AbstractFurnaceBlockEntity furnace = helper.getBlockEntity(FURNACE);
+        relight(furnace);
+        return furnace;
+    }
+
+    /**
+     * Resets the furnace to a full stack that has just started cooking on a fresh piece of coal.
+     */
+    private static void relight(AbstractFurnaceBlockEntity furnace) {
+        IEverFurnaceBlockEntity accessor = (IEverFurnaceBlockEntity) furnace;
+        NonNullList<ItemStack> items = accessor.getItems();
+        items.set(INPUT_SLOT, new ItemStack(Items.RAW_IRON, 64));
+        items.set(FUEL_SLOT, new ItemStack(Items.COAL, 64));
+        items.set(OUTPUT_SLOT, ItemStack.EMPTY);
+        accessor.setLitTime(COAL_BURN_TIME);
+        accessor.setLitDuration(COAL_BURN_TIME);
+        accessor.setCookingProgress(0);
+        accessor.setCookingTotalTime(SMELT_TIME);
+    }
+
+    private static void refill(NonNullList<ItemStack> items, int count) {
+        items.set(INPUT_SLOT, new ItemStack(Items.RAW_IRON, count));
+        items.set(OUTPUT_SLOT, ItemStack.EMPTY);
+    }
+
+    private static void assertSmelted(GameTestHelper helper, NonNullList<ItemStack> items, int count) {
+        ItemStack output = items.get(OUTPUT_SLOT);
+        helper.assertTrue(items.get(INPUT_SLOT).isEmpty() && output.is(Items.IRON_INGOT) && output.getCount() == count,
+                "expected " + count + " iron ingots but found " + output);
+    }
+
+    /**
+     * Logs the results and writes them as JSON to the game directory.
+     */
+    private static void publish(String benchmark, List<Result> results) {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            LOGGER.info("{}.{} (count {}): {} ns/op", benchmark, result.name(), result.count(), String.format(Locale.ROOT, "%.1f", result.nanosPerOp()));
+            json.append(String.format(Locale.ROOT, "  {\"benchmark\": \"%s.%s\", \"count\": %d, \"nsPerOp\": %.1f}%s%n",
+                    benchmark, result.name(), result.count(), result.nanosPerOp(), i < results.size() - 1 ? "," : ""));
+        }
+        json.append("]\n");
+        Path file = FMLPaths.GAMEDIR.get().resolve("everfurnace-benchmarks").resolve(benchmark + ".json");
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, json);
+        } catch (IOException e) {
+            LOGGER.warn("cannot write the benchmark results to {}", file, e);
+        }
+    }
+
+    /**
+     * @param count the items per operation
+     */
+    private record Result(String name, int count, double nanosPerOp) {}
+}
@@ -0,0 +1,53 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.mixin;
+
+import mod.gottsch.neoforge.everfurnace.core.sync.IPredictedMenu;
+import net.minecraft.world.inventory.AbstractContainerMenu;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Stops the per-tick data slot sync of menus whose progress the client predicts.
+ */
+@Mixin(AbstractContainerMenu.class)
+public abstract class EverAbstractContainerMenu implements IPredictedMenu {
+
+    @Unique
+    private boolean everfurnace$predicted;
+
+    @Inject(method = "synchronizeDataSlotToRemote", at = @At("HEAD"), cancellable = true)
+    private void onSynchronizeDataSlotToRemote(int slot, int value, CallbackInfo ci) {
+        if (this.everfurnace$predicted) {
+            ci.cancel();
+        }
+    }
+
+    @Override
+    public boolean everfurnace$isPredicted() {
+        return this.everfurnace$predicted;
+    }
+
+    @Override
+    public void everfurnace$setPredicted(boolean predicted) {
+        this.everfurnace$predicted = predicted;
+    }
+}
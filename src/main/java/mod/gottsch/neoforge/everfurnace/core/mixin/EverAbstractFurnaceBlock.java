@@ -0,0 +1,51 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.mixin;
+
+import mod.gottsch.neoforge.everfurnace.core.furnace.FurnaceTicker;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.AbstractFurnaceBlock;
+import net.minecraft.world.level.block.BaseEntityBlock;
+import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntityTicker;
+import net.minecraft.world.level.block.entity.BlockEntityType;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Replaces the server ticker of furnaces with the FurnaceTicker. Runs once per ticker created, not per tick.
+ */
+@Mixin(AbstractFurnaceBlock.class)
+public abstract class EverAbstractFurnaceBlock extends BaseEntityBlock {
+
+    protected EverAbstractFurnaceBlock(Properties properties) {
+        super(properties);
+    }
+
+    @Inject(method = "createFurnaceTicker", at = @At("RETURN"), cancellable = true)
+    private static <T extends BlockEntity> void onCreateFurnaceTicker(Level level, BlockEntityType<T> serverType,
+            BlockEntityType<? extends AbstractFurnaceBlockEntity> clientType, CallbackInfoReturnable<BlockEntityTicker<T>> cir) {
+        // null on the client, or for a block entity type that does not match
+        if (cir.getReturnValue() != null) {
+            cir.setReturnValue(FurnaceTicker.get());
+        }
+    }
+}
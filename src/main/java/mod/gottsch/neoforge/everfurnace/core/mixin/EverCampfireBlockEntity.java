@@ -0,0 +1,123 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.mixin;
+
+import mod.gottsch.neoforge.everfurnace.core.campfire.CampfireCatchUp;
+import mod.gottsch.neoforge.everfurnace.core.furnace.FurnaceCatchUp;
+import mod.gottsch.neoforge.everfurnace.core.furnace.IResumable;
+import mod.gottsch.neoforge.everfurnace.core.furnace.TickingChunks;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntityType;
+import net.minecraft.world.level.block.entity.CampfireBlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Catches up a lit campfire's cooking on its first tick after loading.
+ */
+@Mixin(CampfireBlockEntity.class)
+public abstract class EverCampfireBlockEntity extends BlockEntity implements IResumable {
+
+    @Unique
+    private static final String LAST_GAME_TIME_TAG = "everfurnace_lastGameTime";
+
+    // loaded from disk, resumed after a gap in ticking, or new, and not yet checked for catch-up
+    @Unique
+    private boolean everfurnace$loaded = true;
+
+    // the game time the state corresponds to while loaded. after the first tick, the last tick of the chunk from TickingChunks
+    @Unique
+    private long everfurnace$lastGameTime;
+
+    protected EverCampfireBlockEntity(BlockEntityType<?> type, BlockPos pos, BlockState blockState) {
+        super(type, pos, blockState);
+    }
+
+    @Inject(method = "saveAdditional", at = @At("TAIL"))
+    private void onSave(CompoundTag tag, HolderLookup.Provider registries, CallbackInfo ci) {
+        tag.putLong(LAST_GAME_TIME_TAG, everfurnace$getLastGameTime());
+    }
+
+    @Inject(method = "loadAdditional", at = @At("TAIL"))
+    private void onLoad(CompoundTag tag, HolderLookup.Provider registries, CallbackInfo ci) {
+        this.everfurnace$lastGameTime = tag.getLong(LAST_GAME_TIME_TAG);
+        this.everfurnace$loaded = true;
+    }
+
+    @Override
+    public void setRemoved() {
+        // record the time the campfire stopped ticking
+        this.everfurnace$lastGameTime = everfurnace$getLastGameTime();
+        this.everfurnace$loaded = true;
+        super.setRemoved();
+    }
+
+    @Inject(method = "cookTick", at = @At("HEAD"))
+    private static void onCookTick(Level level, BlockPos pos, BlockState state, CampfireBlockEntity blockEntity, CallbackInfo ci) {
+        EverCampfireBlockEntity blockEntityMixin = (EverCampfireBlockEntity) (Object) blockEntity;
+        if (!blockEntityMixin.everfurnace$loaded) {
+            return;
+        }
+
+        // first tick after loading
+        blockEntityMixin.everfurnace$loaded = false;
+        TickingChunks.track(level, pos);
+        if (blockEntityMixin.everfurnace$lastGameTime <= 0) {
+            // saved before the mod was added
+            return;
+        }
+        long deltaTime = level.getGameTime() - blockEntityMixin.everfurnace$lastGameTime;
+        if (deltaTime >= FurnaceCatchUp.MIN_DELTA_TIME) {
+            CampfireCatchUp.run(level, pos, state, blockEntity, deltaTime);
+        }
+    }
+
+    @Inject(method = "cooldownTick", at = @At("HEAD"))
+    private static void onCooldownTick(Level level, BlockPos pos, BlockState state, CampfireBlockEntity blockEntity, CallbackInfo ci) {
+        // an unlit campfire does not cook, so there is nothing to catch up if it is lit later
+        EverCampfireBlockEntity blockEntityMixin = (EverCampfireBlockEntity) (Object) blockEntity;
+        if (blockEntityMixin.everfurnace$loaded) {
+            blockEntityMixin.everfurnace$loaded = false;
+            TickingChunks.track(level, pos);
+        }
+    }
+
+    @Override
+    public void everfurnace$resume(long lastGameTime) {
+        if (!this.everfurnace$loaded) {
+            this.everfurnace$lastGameTime = lastGameTime;
+            this.everfurnace$loaded = true;
+        }
+    }
+
+    @Unique
+    private long everfurnace$getLastGameTime() {
+        if (!this.everfurnace$loaded && this.level != null) {
+            return TickingChunks.getLastTicked(this.level, this.worldPosition);
+        }
+        return this.everfurnace$lastGameTime;
+    }
+}
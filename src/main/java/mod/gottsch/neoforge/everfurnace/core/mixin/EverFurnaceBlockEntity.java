@@ -17,15 +17,23 @@
  */
 package mod.gottsch.neoforge.everfurnace.core.mixin;
 
+import mod.gottsch.neoforge.everfurnace.core.Config;
+import mod.gottsch.neoforge.everfurnace.core.furnace.CatchUpScheduler;
+import mod.gottsch.neoforge.everfurnace.core.furnace.FurnaceCatchUp;
+import mod.gottsch.neoforge.everfurnace.core.furnace.FurnaceDormancy;
+import mod.gottsch.neoforge.everfurnace.core.furnace.FurnaceExtinguisher;
+import mod.gottsch.neoforge.everfurnace.core.furnace.IEverFurnace;
+import mod.gottsch.neoforge.everfurnace.core.furnace.IResumable;
+import mod.gottsch.neoforge.everfurnace.core.furnace.TickingChunks;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.HolderLookup;
+import net.minecraft.core.NonNullList;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.WorldlyContainer;
 import net.minecraft.world.inventory.RecipeCraftingHolder;
 import net.minecraft.world.inventory.StackedContentsCompatible;
 import net.minecraft.world.item.ItemStack;
-import net.minecraft.world.item.crafting.RecipeHolder;
-import net.minecraft.world.item.crafting.SingleRecipeInput;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.AbstractFurnaceBlock;
 import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
@@ -37,197 +45,282 @@ import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 /**
  * Created by Mark Gottschling on 12/13/2024
  */
 @Mixin(AbstractFurnaceBlockEntity.class)
-public abstract class EverFurnaceBlockEntity extends BaseContainerBlockEntity implements WorldlyContainer, RecipeCraftingHolder, StackedContentsCompatible {
+public abstract class EverFurnaceBlockEntity extends BaseContainerBlockEntity implements WorldlyContainer, RecipeCraftingHolder, StackedContentsCompatible, IEverFurnace, IResumable {
 
     @Unique
-    private static final int INPUT_SLOT = 0;
+    private static final String LAST_GAME_TIME_TAG = "everfurnace_lastGameTime";
+
+    /*
+     * tick states. the FurnaceTicker runs vanilla ticking directly while TICKING, so the steady state costs one field read.
+     * every other state goes through beforeTick(). AWAKE is TICKING with the dormancy check, used while dormancy is enabled.
+     */
+    // ticking normally - the furnace is as current as the last tick of its chunk
     @Unique
-    private static final int FUEL_SLOT = 1;
+    private static final byte TICKING = 0;
+    // loaded from disk, or resumed after a gap in ticking, and not yet checked for catch-up
     @Unique
-    private static final int OUTPUT_SLOT = 2;
+    private static final byte LOADED = 1;
+    // waiting in the CatchUpScheduler
     @Unique
-    private static final String LAST_GAME_TIME_TAG = "everfurnace_lastGameTime";
+    private static final byte SCHEDULED = 2;
+    // skipping vanilla ticking for sleepTicks ticks
+    @Unique
+    private static final byte DORMANT = 3;
+    // ticking normally, and going dormant when it can
+    @Unique
+    private static final byte AWAKE = 4;
+
+    // a new furnace is LOADED too, so that its first tick starts tracking its chunk
+    @Unique
+    private byte everfurnace$state = LOADED;
 
+    /*
+     * the game time the furnace's state corresponds to, while it is not ticking normally.
+     * while TICKING or AWAKE, it is the time its chunk last ticked its block entities, from TickingChunks.
+     */
     @Unique
     private long everfurnace$lastGameTime;
 
+    @Unique
+    private int everfurnace$sleepTicks;
+    @Unique
+    private int everfurnace$skippedTicks;
+    // the game time before which the furnace does not try to go dormant again
+    @Unique
+    private long everfurnace$sleepCheckTime;
+
     protected EverFurnaceBlockEntity(BlockEntityType<?> type, BlockPos pos, BlockState blockState) {
         super(type, pos, blockState);
     }
 
     @Inject(method = "saveAdditional", at = @At("TAIL"))
     private void onSave(CompoundTag tag, HolderLookup.Provider registries, CallbackInfo ci) {
-        tag.putLong(LAST_GAME_TIME_TAG, this.everfurnace$lastGameTime);
+        tag.putLong(LAST_GAME_TIME_TAG, getEverfurnace$lastGameTime());
     }
 
     @Inject(method = "loadAdditional", at = @At("TAIL"))
     private void onLoad(CompoundTag tag, HolderLookup.Provider registries, CallbackInfo ci) {
         this.everfurnace$lastGameTime = tag.getLong(LAST_GAME_TIME_TAG);
+        this.everfurnace$state = LOADED;
+    }
+
+    @Override
+    public void setRemoved() {
+        if (everfurnace$isRunning()) {
+            // the furnace stopped ticking with its chunk
+            this.everfurnace$lastGameTime = getEverfurnace$lastGameTime();
+            this.everfurnace$state = LOADED;
+        }
+        super.setRemoved();
     }
 
-    @Inject(method = "serverTick", at = @At("HEAD")) // target more specifically somewhere closer to the actual calculations?
-    private static void onTick(Level world, BlockPos pos, BlockState state, AbstractFurnaceBlockEntity blockEntity, CallbackInfo ci) {
-        // cast block entity as a mixin block entity
-        EverFurnaceBlockEntity blockEntityMixin = (EverFurnaceBlockEntity) (Object) blockEntity;
-        IEverFurnaceBlockEntity everFurnaceBlockEntity = (IEverFurnaceBlockEntity) ((Object) blockEntity);
+    @Override
+    public boolean everfurnace$isTicking() {
+        return this.everfurnace$state == TICKING;
+    }
 
-        // record last world time
-        long localLastGameTime = blockEntityMixin.getEverfurnace$lastGameTime();
-        blockEntityMixin.setEverfurnace$lastGameTime(world.getGameTime());
-        if (!everFurnaceBlockEntity.callIsLit()) {
-            return;
+    @Override
+    public boolean everfurnace$beforeTick(Level world, BlockPos pos, BlockState state) {
+        switch (this.everfurnace$state) {
+            case AWAKE:
+                if (!Config.dormantFurnaces) {
+                    this.everfurnace$state = TICKING;
+                } else if (world.getGameTime() >= this.everfurnace$sleepCheckTime && everfurnace$sleep((ServerLevel) world)) {
+                    // this tick is the first one skipped, the furnace stays at its last tick
+                    return false;
+                }
+                return true;
+            case SCHEDULED:
+                // waiting for its catch-up - ticking now would count the elapsed time twice
+                return false;
+            case DORMANT:
+                if (this.everfurnace$skippedTicks < this.everfurnace$sleepTicks) {
+                    this.everfurnace$skippedTicks++;
+                    return false;
+                }
+                // the next tick is an event, let vanilla process it
+                everfurnace$wake();
+                return true;
+            default:
+                break;
         }
 
+        // first tick after loading, or after a gap in ticking
+        TickingChunks.track(world, pos);
+        this.everfurnace$state = everfurnace$running();
+        IEverFurnaceBlockEntity everFurnaceBlockEntity = (IEverFurnaceBlockEntity) this;
+
         // calculate the difference between game time and the lastGameTime
-        long deltaTime = blockEntity.getLevel().getGameTime() - localLastGameTime;
+        long gameTime = world.getGameTime();
+        long deltaTime = gameTime - this.everfurnace$lastGameTime;
+
+        if (!everFurnaceBlockEntity.callIsLit()) {
+            // burnt out while unloaded (ex. by the offline FastForward tool) with its block still lit, which vanilla never clears
+            if (state.getValue(AbstractFurnaceBlock.LIT)) {
+                FurnaceExtinguisher.extinguish(world, pos, state);
+            }
+            return true;
+        }
 
         // exit if not enough time has passed
-        if (deltaTime < 20) {
-            return;
+        if (deltaTime < FurnaceCatchUp.MIN_DELTA_TIME) {
+            return true;
         }
 
-        /*
-         * //////////////////////
-         * validations
-         * //////////////////////
-         */
-        ItemStack cookStack = everFurnaceBlockEntity.getItems().get(INPUT_SLOT);
-        if (cookStack.isEmpty()) return;
-
-        // get the output stack
-        ItemStack outputStack = everFurnaceBlockEntity.getItems().get(OUTPUT_SLOT);
-        // return if it is already maxed out
-        if (!outputStack.isEmpty() && outputStack.getCount() == blockEntity.getMaxStackSize()) return;
-
-        // test if can accept recipe output
-        RecipeHolder recipeholder = (RecipeHolder)everFurnaceBlockEntity.getQuickCheck().getRecipeFor(new SingleRecipeInput(cookStack), world).orElse(null);
-        if (!IEverFurnaceBlockEntity.callCanBurn(world.registryAccess(), recipeholder, everFurnaceBlockEntity.getItems(), blockEntity.getMaxStackSize(), blockEntity)) return;
-        /////////////////////////
-
-        /*
-         * begin processing
-         */
-        // calculate totalBurnTimeRemaining
-        ItemStack fuelStack = everFurnaceBlockEntity.getItems().get(FUEL_SLOT);
-        if (fuelStack.isEmpty()) return;
-        long totalBurnTimeRemaining = (long) (fuelStack.getCount() - 1) * everFurnaceBlockEntity.getLitDuration() + everFurnaceBlockEntity.getLitTime();
-
-        // calculate totalCookTimeRemaining
-        long totalCookTimeRemaining = (long) (cookStack.getCount() -1) * everFurnaceBlockEntity.getCookingTotalTime() + (everFurnaceBlockEntity.getCookingTotalTime() - everFurnaceBlockEntity.getCookingProgress());
-
-        // determine the max amount of time that can be used before one or both input run out.
-        long maxInputTime = Math.min(totalBurnTimeRemaining, totalCookTimeRemaining);
-
-        /*
-         * determine  the actual max time that can be applied to processing. ie if elapsed time is < maxInputTime,
-         * then only the elapse time can be used.
-         */
-        long actualAppliedTime = Math.min(deltaTime, maxInputTime);
-
-        if (actualAppliedTime < everFurnaceBlockEntity.getLitDuration()) {
-            // reduce burn time
-            //blockEntity.litTime =- (int) actualAppliedTime;
-            everFurnaceBlockEntity.setLitTime(everFurnaceBlockEntity.getLitTime() - (int) actualAppliedTime);
-            if (everFurnaceBlockEntity.getLitTime() <= 0) {
-                // reduce the size of the fuel stack
-                fuelStack.shrink(1);
-                if (fuelStack.isEmpty()) {
-                    everFurnaceBlockEntity.setLitTime(0);
-                    everFurnaceBlockEntity.getItems().set(1, fuelStack.getCraftingRemainingItem());
-                } else {
-                    everFurnaceBlockEntity.setLitTime(everFurnaceBlockEntity.getLitTime() + everFurnaceBlockEntity.getLitDuration());
-                }
-            }
-        } else {
-            int quotient = (int) (Math.floor((double) actualAppliedTime / everFurnaceBlockEntity.getLitDuration()));
-            long remainder = actualAppliedTime % everFurnaceBlockEntity.getLitDuration();
-            // reduced stack by quotient
-            fuelStack.shrink(quotient);
-            // reduce litTime by remainder
-            everFurnaceBlockEntity.setLitTime(everFurnaceBlockEntity.getLitTime() - (int) remainder);
-            if (everFurnaceBlockEntity.getLitTime() <= 0) {
-                // reduce the size of the fuel stack
-                fuelStack.shrink(1);
-            }
-            if (fuelStack.isEmpty()) {
-                everFurnaceBlockEntity.setLitTime(0);
-                everFurnaceBlockEntity.getItems().set(1, fuelStack.getCraftingRemainingItem());
-            } else {
-                everFurnaceBlockEntity.setLitTime(everFurnaceBlockEntity.getLitTime()
-                        - (int) everFurnaceBlockEntity.getLitDuration());
+        // defer large catch-ups to the scheduler, keeping the last game time so the full elapsed time is applied
+        if (CatchUpScheduler.shouldSchedule(deltaTime)) {
+            CatchUpScheduler.schedule((ServerLevel) world, pos, this);
+            return false;
+        }
 
-            }
+        this.everfurnace$lastGameTime = gameTime;
+        FurnaceCatchUp.runAfterUnload(world, pos, state, (AbstractFurnaceBlockEntity) (Object) this, deltaTime);
+        return true;
+    }
+
+    @Override
+    public void everfurnace$resume(long lastGameTime) {
+        if (this.everfurnace$state == DORMANT) {
+            // apply the ticks skipped before the gap
+            everfurnace$wake();
         }
+        if (everfurnace$isRunning()) {
+            this.everfurnace$lastGameTime = lastGameTime;
+            this.everfurnace$state = LOADED;
+        }
+    }
 
-        if (actualAppliedTime < everFurnaceBlockEntity.getCookingTotalTime()) {
-            // increment cook progress time
-            everFurnaceBlockEntity.setCookingProgress(everFurnaceBlockEntity.getCookingProgress()
-                + (int) actualAppliedTime);
+    /**
+     * @return the running state: AWAKE while dormancy is enabled, otherwise TICKING
+     */
+    @Unique
+    private static byte everfurnace$running() {
+        return Config.dormantFurnaces ? AWAKE : TICKING;
+    }
 
-            if (everFurnaceBlockEntity.getCookingProgress() >= everFurnaceBlockEntity.getCookingTotalTime()) {
-                if (IEverFurnaceBlockEntity.callBurn(world.registryAccess(), recipeholder, everFurnaceBlockEntity.getItems(), blockEntity.getMaxStackSize(), blockEntity)) {
-                    blockEntity.setRecipeUsed(recipeholder);
-                }
-                if (cookStack.isEmpty()) {
-                    everFurnaceBlockEntity.setCookingProgress(0);
-                    everFurnaceBlockEntity.setCookingTotalTime(0);
-                } else {
-                    everFurnaceBlockEntity.setCookingProgress(everFurnaceBlockEntity.getCookingProgress()
-                        - everFurnaceBlockEntity.getCookingTotalTime());
-                }
-            }
+    @Unique
+    private boolean everfurnace$isRunning() {
+        return this.everfurnace$state == TICKING || this.everfurnace$state == AWAKE;
+    }
+
+    /**
+     * Puts the furnace to sleep if it can skip ticking until its next event, counting the current tick as skipped.
+     * A furnace that cannot sleep is not checked again for the minimum sleep time.
+     * @return true if the furnace is now dormant
+     */
+    @Unique
+    private boolean everfurnace$sleep(ServerLevel level) {
+        int sleepTicks = FurnaceDormancy.sleepTicks(level, (AbstractFurnaceBlockEntity) (Object) this);
+        if (sleepTicks <= 0) {
+            this.everfurnace$sleepCheckTime = level.getGameTime() + Config.dormantMinSleepTicks;
+            return false;
         }
-        // actual applied time is greated that cook time total,
-        // there, need to apply a factor of
-        else {
-            int quotient = (int) (Math.floor((double) actualAppliedTime / everFurnaceBlockEntity.getCookingTotalTime()));
-            long remainder = actualAppliedTime % everFurnaceBlockEntity.getCookingTotalTime();
-            // reduced stack by quotient
-            boolean isSuccessful = false;
-            for (int iterations = 0; iterations < quotient; iterations++) {
-                isSuccessful |= IEverFurnaceBlockEntity.callBurn(world.registryAccess(), recipeholder, everFurnaceBlockEntity.getItems(), blockEntity.getMaxStackSize(), blockEntity);
-            }
-            // update last recipe
-            if (isSuccessful) blockEntity.setRecipeUsed(recipeholder);
+        // the furnace is at the last tick of its chunk
+        this.everfurnace$lastGameTime = getEverfurnace$lastGameTime();
+        this.everfurnace$state = DORMANT;
+        this.everfurnace$sleepTicks = sleepTicks;
+        this.everfurnace$skippedTicks = 1;
+        return true;
+    }
 
-            // increment cook time
-            everFurnaceBlockEntity.setCookingProgress(everFurnaceBlockEntity.getCookingProgress()
-             + (int) remainder);
+    /*
+     * any access to the inventory (hoppers, players, comparators) wakes a dormant furnace,
+     * or catches up a scheduled one, first
+     */
+    @Inject(method = "getItems", at = @At("HEAD"))
+    private void onGetItems(CallbackInfoReturnable<NonNullList<ItemStack>> cir) {
+        if (this.everfurnace$state == DORMANT) {
+            everfurnace$wakeEarly();
+        } else if (this.everfurnace$state == SCHEDULED) {
+            everfurnace$catchUpEarly();
+        }
+    }
 
-            if (everFurnaceBlockEntity.getCookingProgress() >= everFurnaceBlockEntity.getCookingTotalTime()) {
-                if (IEverFurnaceBlockEntity.callBurn(world.registryAccess(), recipeholder, everFurnaceBlockEntity.getItems(), blockEntity.getMaxStackSize(), blockEntity)) {
-                    blockEntity.setRecipeUsed(recipeholder);
-                }
-                if (cookStack.isEmpty()) {
-                    everFurnaceBlockEntity.setCookingProgress(0);
-                    everFurnaceBlockEntity.setCookingTotalTime(0);
-                } else {
-                    everFurnaceBlockEntity.setCookingProgress(everFurnaceBlockEntity.getCookingProgress()
-                        - everFurnaceBlockEntity.getCookingTotalTime());
+    @Inject(method = "setItem", at = @At("HEAD"))
+    private void onSetItem(int index, ItemStack stack, CallbackInfo ci) {
+        if (this.everfurnace$state == DORMANT) {
+            everfurnace$wakeEarly();
+        } else if (this.everfurnace$state == SCHEDULED) {
+            everfurnace$catchUpEarly();
+        }
+    }
 
-                }
-            }
+    /**
+     * Wakes the furnace before its next event. Its inventory is being worked on (ex. by a hopper),
+     * so it is likely to be woken again right away and does not try to sleep for the minimum sleep time.
+     */
+    @Unique
+    private void everfurnace$wakeEarly() {
+        everfurnace$wake();
+        if (this.level != null) {
+            this.everfurnace$sleepCheckTime = this.level.getGameTime() + Config.dormantMinSleepTicks;
         }
+    }
 
-        if(!everFurnaceBlockEntity.callIsLit()) {
-            state = state.setValue(AbstractFurnaceBlock.LIT, everFurnaceBlockEntity.callIsLit());
-            world.setBlock(pos, state, 3);
-            AbstractFurnaceBlockEntity.setChanged(world, pos, state);
+    /**
+     * Fast-forwards a dormant furnace over the ticks it skipped. The skipped ticks never contain an event,
+     * so this only advances the lit time and cooking progress. It is not a catch-up and is left out of the stats.
+     */
+    @Unique
+    private void everfurnace$wake() {
+        this.everfurnace$state = everfurnace$running();
+        int skippedTicks = this.everfurnace$skippedTicks;
+        this.everfurnace$skippedTicks = 0;
+        // the furnace is now at the tick it last skipped
+        this.everfurnace$lastGameTime += skippedTicks;
+        if (skippedTicks > 0 && this.level != null) {
+            FurnaceCatchUp.fastForward(this.level, this.worldPosition, this.getBlockState(), (AbstractFurnaceBlockEntity) (Object) this, skippedTicks);
         }
     }
 
+    /**
+     * Catches up a scheduled furnace ahead of its turn, so that its inventory is never changed
+     * on the state from before the elapsed time.
+     */
     @Unique
+    private void everfurnace$catchUpEarly() {
+        CatchUpScheduler.cancel(this);
+        everfurnace$catchUp();
+    }
+
+    @Override
+    public void everfurnace$catchUp() {
+        this.everfurnace$state = everfurnace$running();
+        long deltaTime = this.level.getGameTime() - this.everfurnace$lastGameTime;
+        this.everfurnace$lastGameTime = this.level.getGameTime();
+        FurnaceCatchUp.runAfterUnload(this.level, this.worldPosition, this.getBlockState(), (AbstractFurnaceBlockEntity) (Object) this, deltaTime);
+    }
+
+    @Override
     public long getEverfurnace$lastGameTime() {
+        if (everfurnace$isRunning() && this.level != null) {
+            return TickingChunks.getLastTicked(this.level, this.worldPosition);
+        }
         return everfurnace$lastGameTime;
     }
 
-    @Unique
+    @Override
     public void setEverfurnace$lastGameTime(long everfurnace$lastGameTime) {
         this.everfurnace$lastGameTime = everfurnace$lastGameTime;
     }
+
+    @Override
+    public boolean everfurnace$isScheduled() {
+        return this.everfurnace$state == SCHEDULED;
+    }
+
+    @Override
+    public void everfurnace$setScheduled(boolean scheduled) {
+        if (scheduled) {
+            this.everfurnace$state = SCHEDULED;
+        } else if (this.everfurnace$state == SCHEDULED) {
+            this.everfurnace$state = LOADED;
+        }
+    }
 }
@@ -0,0 +1,62 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.mixin;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.NonNullList;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.alchemy.PotionBrewing;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.BrewingStandBlockEntity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+import org.spongepowered.asm.mixin.gen.Invoker;
+
+/**
+ * Accessors and invokers for the brewing state of a brewing stand.
+ */
+@Mixin(BrewingStandBlockEntity.class)
+public interface IBrewingStandBlockEntity {
+
+    @Accessor("items")
+    NonNullList<ItemStack> getBrewingItems();
+
+    @Accessor
+    int getBrewTime();
+    @Accessor
+    void setBrewTime(int brewTime);
+
+    @Accessor
+    int getFuel();
+    @Accessor
+    void setFuel(int fuel);
+
+    @Accessor
+    Item getIngredient();
+
+    @Invoker
+    static boolean callIsBrewable(PotionBrewing potionBrewing, NonNullList<ItemStack> items) {
+        throw new AssertionError();
+    }
+
+    @Invoker
+    static void callDoBrew(Level level, BlockPos pos, NonNullList<ItemStack> items) {
+        throw new AssertionError();
+    }
+}
@@ -17,12 +17,15 @@
  */
 package mod.gottsch.neoforge.everfurnace.core.mixin;
 
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import net.minecraft.core.NonNullList;
 import net.minecraft.core.RegistryAccess;
+import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.crafting.AbstractCookingRecipe;
 import net.minecraft.world.item.crafting.RecipeHolder;
 import net.minecraft.world.item.crafting.RecipeManager;
+import net.minecraft.world.item.crafting.RecipeType;
 import net.minecraft.world.item.crafting.SingleRecipeInput;
 import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
 import org.spongepowered.asm.mixin.Mixin;
@@ -45,6 +48,8 @@ public interface IEverFurnaceBlockEntity {
 
     @Accessor
     int getLitDuration();
+    @Accessor("litDuration")
+    public void setLitDuration(int litDuration);
 
     @Accessor
     int getCookingProgress();
@@ -62,9 +67,18 @@ public interface IEverFurnaceBlockEntity {
     @Accessor
     RecipeManager.CachedCheck<SingleRecipeInput, ? extends AbstractCookingRecipe> getQuickCheck();
 
+    @Accessor
+    RecipeType<? extends AbstractCookingRecipe> getRecipeType();
+
+    @Accessor
+    Object2IntOpenHashMap<ResourceLocation> getRecipesUsed();
+
     @Invoker
     public boolean callIsLit();
 
+    @Invoker
+    public int callGetBurnDuration(ItemStack fuel);
+
     @Invoker
     public static boolean callCanBurn(RegistryAccess registryAccess, @Nullable RecipeHolder<?> recipe, NonNullList<ItemStack> inventory, int maxStackSize, AbstractFurnaceBlockEntity furnace) {
         throw new AssertionError();
@@ -0,0 +1,266 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.offline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The cooking recipes, item tags and furnace fuels read from datapack sources (jars, zips or directories),
+ * for the offline tool that has no recipe manager to ask.
+ * Like the game, later sources override earlier recipes, while tags and the fuel data map are merged
+ * unless a file asks to replace.
+ */
+final class DataPacks {
+    private static final String FUELS_PATH = "data/neoforge/data_maps/item/furnace_fuels.json";
+
+    /** id -> recipe json, sorted so that lookups are deterministic */
+    private final Map<String, Map<String, Object>> recipes = new TreeMap<>();
+    private final Map<String, List<Object>> tags = new HashMap<>();
+    private final Map<String, Object> fuels = new LinkedHashMap<>();
+
+    private final Map<String, Map<String, Smelting>> smeltings = new HashMap<>();
+    /** recipe types with recipes that could not be read, so a missing recipe proves nothing */
+    private final Set<String> incompleteTypes = new HashSet<>();
+    private final Map<String, Integer> burnTimes = new HashMap<>();
+
+    /**
+     * A cooking recipe reduced to what the catch-up needs.
+     */
+    record Smelting(String recipeId, String result, int resultCount, int cookingTime) {}
+
+    private DataPacks() {}
+
+    static DataPacks load(List<Path> sources) throws IOException {
+        DataPacks packs = new DataPacks();
+        for (Path source : sources) {
+            if (Files.isDirectory(source)) {
+                packs.loadDirectory(source);
+            } else {
+                packs.loadZip(source);
+            }
+        }
+        packs.resolve();
+        return packs;
+    }
+
+    /**
+     * @return the recipe of the type for the input item, or null if there is none
+     */
+    Smelting getSmelting(String recipeType, String input) {
+        return smeltings.getOrDefault(recipeType, Collections.emptyMap()).get(input);
+    }
+
+    boolean hasRecipes(String recipeType) {
+        return smeltings.containsKey(recipeType);
+    }
+
+    boolean isComplete(String recipeType) {
+        return !incompleteTypes.contains(recipeType);
+    }
+
+    /**
+     * @return the burn time of one fuel item in a furnace, 0 if it is not a fuel
+     */
+    int getBurnTime(String item) {
+        return burnTimes.getOrDefault(item, 0);
+    }
+
+    boolean hasFuels() {
+        return !burnTimes.isEmpty();
+    }
+
+    private void loadDirectory(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root.resolve("data"))) {
+            for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                accept(root.relativize(file).toString().replace('\\', '/'), Files.readString(file, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private void loadZip(Path zip) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().startsWith("data/")) {
+                    continue;
+                }
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    accept(entry.getName(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps the file if it is a recipe, an item tag or the fuel data map.
+     */
+    @SuppressWarnings("unchecked")
+    private void accept(String path, String content) throws IOException {
+        if (!path.endsWith(".json")) {
+            return;
+        }
+        String[] parts = path.substring(0, path.length() - ".json".length()).split("/", 4);
+        if (parts.length < 4) {
+            return;
+        }
+        String namespace = parts[1];
+        if (parts[2].equals("recipe")) {
+            if (parse(path, content) instanceof Map<?, ?> recipe) {
+                recipes.put(namespace + ":" + parts[3], (Map<String, Object>) recipe);
+            }
+        } else if (parts[2].equals("tags") && parts[3].startsWith("item/")) {
+            if (parse(path, content) instanceof Map<?, ?> tag) {
+                String id = namespace + ":" + parts[3].substring("item/".length());
+                List<Object> values = Boolean.TRUE.equals(tag.get("replace")) ? new ArrayList<>() : tags.getOrDefault(id, new ArrayList<>());
+                if (tag.get("values") instanceof List<?> list) {
+                    values.addAll(list);
+                }
+                tags.put(id, values);
+            }
+        } else if (path.equals(FUELS_PATH)) {
+            if (parse(path, content) instanceof Map<?, ?> dataMap) {
+                if (Boolean.TRUE.equals(dataMap.get("replace"))) {
+                    fuels.clear();
+                }
+                if (dataMap.get("values") instanceof Map<?, ?> values) {
+                    fuels.putAll((Map<String, Object>) values);
+                }
+                if (dataMap.get("remove") instanceof List<?> remove) {
+                    remove.forEach(fuels::remove);
+                }
+            }
+        }
+    }
+
+    private static Object parse(String path, String content) {
+        try {
+            return Json.parse(content);
+        } catch (IOException e) {
+            System.err.println("skipping " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Expands the tags of the recipe ingredients and fuels into per-item lookups.
+     */
+    private void resolve() {
+        recipes.forEach((id, recipe) -> {
+            if (!(recipe.get("type") instanceof String type) || !FastForward.FurnaceType.isRecipeType(type)) {
+                return;
+            }
+            Map<String, Smelting> byItem = smeltings.computeIfAbsent(type, key -> new HashMap<>());
+            Set<String> inputs = recipe.containsKey("neoforge:conditions") ? null : ingredient(recipe.get("ingredient"));
+            if (inputs == null || !(recipe.get("result") instanceof Map<?, ?> result)
+                    || !(result.get("id") instanceof String resultId) || result.containsKey("components")) {
+                incompleteTypes.add(type);
+                return;
+            }
+            int count = result.get("count") instanceof Double d ? d.intValue() : 1;
+            int cookingTime = recipe.get("cookingtime") instanceof Double d ? d.intValue() : FastForward.FurnaceType.defaultCookingTime(type);
+            Smelting smelting = new Smelting(id, resultId, count, cookingTime);
+            for (String input : inputs) {
+                byItem.putIfAbsent(input, smelting);
+            }
+        });
+
+        // like the data map, an entry for the item wins over one for a tag
+        fuels.forEach((key, value) -> {
+            if (key.startsWith("#")) {
+                int burnTime = burnTime(value);
+                expand(key.substring(1), new HashSet<>()).forEach(item -> burnTimes.put(item, burnTime));
+            }
+        });
+        fuels.forEach((key, value) -> {
+            if (!key.startsWith("#")) {
+                burnTimes.put(key, burnTime(value));
+            }
+        });
+        burnTimes.values().removeIf(burnTime -> burnTime <= 0);
+    }
+
+    private static int burnTime(Object value) {
+        return value instanceof Map<?, ?> map && map.get("burn_time") instanceof Double d ? d.intValue() : 0;
+    }
+
+    /**
+     * @return the items matched by a vanilla item or tag ingredient, or null for any other kind of ingredient
+     */
+    private Set<String> ingredient(Object ingredient) {
+        Set<String> items = new LinkedHashSet<>();
+        if (ingredient instanceof List<?> list) {
+            for (Object element : list) {
+                Set<String> elementItems = ingredient(element);
+                if (elementItems == null) {
+                    return null;
+                }
+                items.addAll(elementItems);
+            }
+            return items;
+        }
+        if (!(ingredient instanceof Map<?, ?> map) || map.containsKey("type")) {
+            return null;
+        }
+        if (map.get("item") instanceof String item) {
+            items.add(item);
+        } else if (map.get("tag") instanceof String tag) {
+            items.addAll(expand(tag, new HashSet<>()));
+        } else {
+            return null;
+        }
+        return items;
+    }
+
+    private Set<String> expand(String tag, Set<String> visited) {
+        Set<String> items = new LinkedHashSet<>();
+        if (!visited.add(tag)) {
+            return items;
+        }
+        for (Object value : tags.getOrDefault(tag, Collections.emptyList())) {
+            String entry = value instanceof Map<?, ?> map && map.get("id") instanceof String id ? id : value instanceof String s ? s : null;
+            if (entry == null) {
+                continue;
+            }
+            if (entry.startsWith("#")) {
+                items.addAll(expand(entry.substring(1), visited));
+            } else {
+                items.add(entry);
+            }
+        }
+        return items;
+    }
+}
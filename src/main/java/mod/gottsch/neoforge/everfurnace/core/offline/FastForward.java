@@ -0,0 +1,280 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.offline;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Offline world-save fast-forward: applies the pending catch-up of every unloaded lit furnace
+ * directly to the region files of a stopped world, so it does not land on the first players to log in.
+ * Runs from the mod jar alone, without a server or network:
+ * <pre>
+ * java -cp everfurnace-&lt;version&gt;.jar mod.gottsch.neoforge.everfurnace.core.offline.FastForward &lt;world&gt;
+ *      --data &lt;server jar&gt; --data &lt;neoforge jar&gt; [--data &lt;mod jar or datapack&gt;...] [--threads n] [--dry-run]
+ * </pre>
+ * Recipes, item tags and furnace fuels are read from the --data sources and the world's datapacks,
+ * so they should include every jar that adds cooking recipes or fuels.
+ * Regions are processed in parallel, one task per region file.
+ */
+public final class FastForward {
+    private static final String USAGE = "usage: FastForward <world> --data <jar|zip|dir> [--data ...] [--threads n] [--dry-run]";
+
+    private final FurnaceRewriter rewriter;
+    private final long gameTime;
+    private final boolean dryRun;
+
+    private final LongAdder regions = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder external = new LongAdder();
+    private final LongAdder updated = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * The vanilla furnaces, with the recipe type they cook and how fast they burn fuel.
+     */
+    enum FurnaceType {
+        FURNACE("minecraft:furnace", "minecraft:smelting", 200, 1),
+        BLAST_FURNACE("minecraft:blast_furnace", "minecraft:blasting", 100, 2),
+        SMOKER("minecraft:smoker", "minecraft:smoking", 100, 2);
+
+        final String id;
+        final String recipeType;
+        final int defaultCookingTime;
+        final int burnTimeDivisor;
+
+        FurnaceType(String id, String recipeType, int defaultCookingTime, int burnTimeDivisor) {
+            this.id = id;
+            this.recipeType = recipeType;
+            this.defaultCookingTime = defaultCookingTime;
+            this.burnTimeDivisor = burnTimeDivisor;
+        }
+
+        static FurnaceType byId(Object id) {
+            for (FurnaceType type : values()) {
+                if (type.id.equals(id)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+        static boolean isRecipeType(String recipeType) {
+            return defaultCookingTime(recipeType) > 0;
+        }
+
+        static int defaultCookingTime(String recipeType) {
+            for (FurnaceType type : values()) {
+                if (type.recipeType.equals(recipeType)) {
+                    return type.defaultCookingTime;
+                }
+            }
+            return 0;
+        }
+    }
+
+    private FastForward(DataPacks dataPacks, long gameTime, boolean dryRun) {
+        this.rewriter = new FurnaceRewriter(dataPacks);
+        this.gameTime = gameTime;
+        this.dryRun = dryRun;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path world = null;
+        List<Path> sources = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean dryRun = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--data": sources.add(Path.of(args[++i])); break;
+                    case "--threads": threads = Math.max(1, Integer.parseInt(args[++i])); break;
+                    case "--dry-run": dryRun = true; break;
+                    default: {
+                        if (world != null || args[i].startsWith("--")) {
+                            fail("unknown argument " + args[i]);
+                        }
+                        world = Path.of(args[i]);
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            fail("missing or invalid value for " + args[args.length - 1]);
+        }
+        if (world == null || !Files.isRegularFile(world.resolve("level.dat"))) {
+            fail("not a world directory: " + world);
+        }
+
+        // the same lock a running server holds
+        try (FileChannel lockChannel = FileChannel.open(world.resolve("session.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = lockChannel.tryLock()) {
+            if (lock == null) {
+                fail("the world is in use, stop the server first");
+            }
+            sources.addAll(0, listDatapacks(world));
+            DataPacks dataPacks = DataPacks.load(sources);
+            if (!dataPacks.hasFuels() || !dataPacks.hasRecipes(FurnaceType.FURNACE.recipeType)) {
+                fail("no furnace recipes or fuels found, pass the server and NeoForge jars with --data");
+            }
+            long gameTime = readGameTime(world);
+            new FastForward(dataPacks, gameTime, dryRun).run(world, threads);
+        }
+    }
+
+    private void run(Path world, int threads) throws InterruptedException {
+        List<Path> regionFiles;
+        try (Stream<Path> files = Files.walk(world)) {
+            regionFiles = files.filter(path -> path.getFileName().toString().endsWith(".mca")
+                    && path.getParent().getFileName().toString().equals("region")).toList();
+        } catch (IOException e) {
+            fail("cannot list the region files: " + e.getMessage());
+            return;
+        }
+        System.out.printf("fast-forwarding %d region file(s) to game time %d%s%n", regionFiles.size(), gameTime, dryRun ? " (dry run)" : "");
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Path regionFile : regionFiles) {
+                futures.add(executor.submit(() -> processRegion(regionFile)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    failed.increment();
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        System.out.printf("%d furnace(s) fast-forwarded in %d chunk(s) of %d region(s), %d chunk(s) stored in .mcc files, %d left for the in-game catch-up, %d region(s) failed, %d ms%n",
+                updated.sum(), chunks.sum(), regions.sum(), external.sum(), skipped.sum(), failed.sum(), (System.nanoTime() - start) / 1_000_000L);
+        if (failed.sum() > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Rewrites the region file if any of its chunks holds a furnace that could be fast-forwarded.
+     * A region that cannot be read is left untouched.
+     */
+    private void processRegion(Path regionFile) {
+        try {
+            List<RegionFile.Chunk> chunkList = RegionFile.read(regionFile);
+            boolean changed = false;
+            for (int i = 0; i < chunkList.size(); i++) {
+                RegionFile.Chunk chunk = chunkList.get(i);
+                if (!chunk.isReadable()) {
+                    continue;
+                }
+                Map<String, Object> tag = chunk.read();
+                int count = processChunk(tag);
+                if (count == 0) {
+                    continue;
+                }
+                RegionFile.Chunk rewritten = RegionFile.Chunk.of(chunk.index(), tag);
+                if (rewritten.isOversized()) {
+                    external.increment();
+                    System.out.println(RegionFile.externalPath(regionFile, chunk.index()) + ": chunk too large for the region, stored externally");
+                }
+                chunkList.set(i, rewritten);
+                chunks.increment();
+                updated.add(count);
+                changed = true;
+            }
+            if (changed) {
+                regions.increment();
+                if (!dryRun) {
+                    RegionFile.write(regionFile, chunkList);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failed.increment();
+            System.err.println(regionFile + ": " + e);
+        }
+    }
+
+    /**
+     * @return the number of furnaces of the chunk that were fast-forwarded
+     */
+    @SuppressWarnings("unchecked")
+    private int processChunk(Map<String, Object> tag) {
+        if (!(tag.get("block_entities") instanceof Nbt.ListTag blockEntities)) {
+            return 0;
+        }
+        int count = 0;
+        for (Object blockEntity : blockEntities.values()) {
+            if (!(blockEntity instanceof Map<?, ?> map)) {
+                continue;
+            }
+            switch (rewriter.fastForward((Map<String, Object>) map, gameTime)) {
+                case UPDATED: count++; break;
+                case SKIPPED: skipped.increment(); break;
+                default: break;
+            }
+        }
+        return count;
+    }
+
+    private static List<Path> listDatapacks(Path world) throws IOException {
+        Path datapacks = world.resolve("datapacks");
+        if (!Files.isDirectory(datapacks)) {
+            return List.of();
+        }
+        try (Stream<Path> packs = Files.list(datapacks)) {
+            return packs.filter(path -> Files.isDirectory(path) || path.toString().endsWith(".zip")).sorted().toList();
+        }
+    }
+
+    /**
+     * @return Data.Time of level.dat, the game time shared by every dimension
+     */
+    private static long readGameTime(Path world) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(world.resolve("level.dat")));
+             DataInputStream dataIn = new DataInputStream(in)) {
+            if (Nbt.read(dataIn).get("Data") instanceof Map<?, ?> data && data.get("Time") instanceof Long time) {
+                return time;
+            }
+        }
+        throw new IOException("level.dat has no Data.Time");
+    }
+
+    private static void fail(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.offline;
+
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookResult;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookSimulator;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookState;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies the catch-up to the saved NBT of a furnace block entity, the same way FurnaceCatchUp applies it
+ * to a loaded furnace. Furnaces whose recipe, result stack size or fuel remainder cannot be known from the data sources
+ * are left for the in-game catch-up.
+ */
+final class FurnaceRewriter {
+    static final String LAST_GAME_TIME_TAG = "everfurnace_lastGameTime";
+
+    private static final int MIN_DELTA_TIME = 20;
+    private static final int MAX_STACK_SIZE = 64;
+    private static final int BURN_TIME_STANDARD = 200;
+
+    private static final byte INPUT_SLOT = 0;
+    private static final byte FUEL_SLOT = 1;
+    private static final byte OUTPUT_SLOT = 2;
+
+    private static final String VANILLA_NAMESPACE = "minecraft:";
+
+    /**
+     * vanilla's items with a crafting remainder, which replaces the whole fuel stack when one is burnt.
+     * without the item registry, the remainder of a modded fuel is unknown.
+     */
+    private static final Map<String, String> FUEL_REMAINDERS = Map.of(
+            "minecraft:lava_bucket", "minecraft:bucket",
+            "minecraft:water_bucket", "minecraft:bucket",
+            "minecraft:milk_bucket", "minecraft:bucket",
+            "minecraft:honey_bottle", "minecraft:glass_bottle",
+            "minecraft:dragon_breath", "minecraft:glass_bottle");
+
+    /**
+     * the results of vanilla's cooking recipes, which all stack to 64.
+     * without the item registry, the stack size of any other result is unknown.
+     */
+    private static final Set<String> STACKS_TO_64 = Set.of(
+            "minecraft:iron_ingot", "minecraft:gold_ingot", "minecraft:copper_ingot", "minecraft:netherite_scrap",
+            "minecraft:iron_nugget", "minecraft:gold_nugget", "minecraft:coal", "minecraft:diamond", "minecraft:emerald",
+            "minecraft:lapis_lazuli", "minecraft:redstone", "minecraft:quartz", "minecraft:charcoal",
+            "minecraft:glass", "minecraft:stone", "minecraft:smooth_stone", "minecraft:deepslate", "minecraft:smooth_basalt",
+            "minecraft:smooth_sandstone", "minecraft:smooth_red_sandstone", "minecraft:smooth_quartz",
+            "minecraft:cracked_stone_bricks", "minecraft:cracked_deepslate_bricks", "minecraft:cracked_deepslate_tiles",
+            "minecraft:cracked_nether_bricks", "minecraft:cracked_polished_blackstone_bricks",
+            "minecraft:brick", "minecraft:nether_brick", "minecraft:terracotta",
+            "minecraft:white_glazed_terracotta", "minecraft:orange_glazed_terracotta", "minecraft:magenta_glazed_terracotta",
+            "minecraft:light_blue_glazed_terracotta", "minecraft:yellow_glazed_terracotta", "minecraft:lime_glazed_terracotta",
+            "minecraft:pink_glazed_terracotta", "minecraft:gray_glazed_terracotta", "minecraft:light_gray_glazed_terracotta",
+            "minecraft:cyan_glazed_terracotta", "minecraft:purple_glazed_terracotta", "minecraft:blue_glazed_terracotta",
+            "minecraft:brown_glazed_terracotta", "minecraft:green_glazed_terracotta", "minecraft:red_glazed_terracotta",
+            "minecraft:black_glazed_terracotta",
+            "minecraft:sponge", "minecraft:green_dye", "minecraft:lime_dye", "minecraft:dried_kelp", "minecraft:popped_chorus_fruit",
+            "minecraft:cooked_beef", "minecraft:cooked_porkchop", "minecraft:cooked_chicken", "minecraft:cooked_mutton",
+            "minecraft:cooked_rabbit", "minecraft:cooked_cod", "minecraft:cooked_salmon", "minecraft:baked_potato");
+
+    private final DataPacks dataPacks;
+
+    enum Outcome {
+        /** not a furnace with pending catch-up */
+        NONE,
+        UPDATED,
+        /** a pending furnace that has to wait for the in-game catch-up */
+        SKIPPED
+    }
+
+    FurnaceRewriter(DataPacks dataPacks) {
+        this.dataPacks = dataPacks;
+    }
+
+    Outcome fastForward(Map<String, Object> blockEntity, long gameTime) {
+        if (!(blockEntity.get(LAST_GAME_TIME_TAG) instanceof Long lastGameTime)) {
+            return Outcome.NONE;
+        }
+        long deltaTime = gameTime - lastGameTime;
+        int litTime = getInt(blockEntity, "BurnTime");
+        if (lastGameTime <= 0 || deltaTime < MIN_DELTA_TIME || litTime <= 0) {
+            return Outcome.NONE;
+        }
+        FastForward.FurnaceType type = FastForward.FurnaceType.byId(blockEntity.get("id"));
+        if (type == null || !(blockEntity.getOrDefault("Items", new Nbt.ListTag(Nbt.COMPOUND, new ArrayList<>())) instanceof Nbt.ListTag items)) {
+            return Outcome.SKIPPED;
+        }
+
+        Map<Byte, Map<String, Object>> slots = new LinkedHashMap<>();
+        for (Object item : items.values()) {
+            if (item instanceof Map<?, ?> stack && stack.get("Slot") instanceof Byte slot) {
+                slots.put(slot, cast(stack));
+            }
+        }
+        Map<String, Object> input = slots.get(INPUT_SLOT);
+        Map<String, Object> fuel = slots.get(FUEL_SLOT);
+        Map<String, Object> output = slots.get(OUTPUT_SLOT);
+
+        // resolve, as FurnaceSnapshot does
+        DataPacks.Smelting smelting = input == null ? null : dataPacks.getSmelting(type.recipeType, getId(input));
+        if (input != null && smelting == null && !dataPacks.isComplete(type.recipeType)) {
+            return Outcome.SKIPPED;
+        }
+        int fuelBurnTime = fuel == null ? 0 : dataPacks.getBurnTime(getId(fuel)) / type.burnTimeDivisor;
+        // rather than guess a stack size or a fuel remainder, leave the furnace to the in-game catch-up
+        if ((smelting != null && !STACKS_TO_64.contains(smelting.result()))
+                || (fuelBurnTime > 0 && !getId(fuel).startsWith(VANILLA_NAMESPACE))) {
+            return Outcome.SKIPPED;
+        }
+        int outputSpace = smelting == null ? 0 : outputSpace(output, smelting);
+
+        int fuelCount;
+        boolean fuelResidue;
+        if (fuelBurnTime <= 0) {
+            fuelCount = 0;
+            fuelResidue = fuel != null;
+        } else if (FUEL_REMAINDERS.containsKey(getId(fuel))) {
+            fuelCount = 1;
+            fuelResidue = true;
+        } else {
+            fuelCount = getCount(fuel);
+            fuelResidue = false;
+        }
+
+        // the game does not save litDuration, it reloads it from the fuel slot
+        CookState state = new CookState(input == null ? 0 : getCount(input), fuelCount, fuelBurnTime, fuelResidue,
+                litTime, fuelBurnTime, getInt(blockEntity, "CookTime"), getInt(blockEntity, "CookTimeTotal"), outputSpace);
+        CookResult outcome = CookSimulator.simulate(state, deltaTime);
+
+        // apply, as FurnaceCatchUp does
+        if (outcome.fuelConsumed() > 0) {
+            String remainder = FUEL_REMAINDERS.get(getId(fuel));
+            if (remainder != null) {
+                slots.put(FUEL_SLOT, stack(FUEL_SLOT, remainder, 1));
+            } else {
+                shrink(slots, FUEL_SLOT, outcome.fuelConsumed());
+            }
+        }
+        if (outcome.smelted() > 0 && smelting != null) {
+            // wet sponge + bucket is a one-time conversion of the fuel slot
+            if (getId(input).equals("minecraft:wet_sponge") && slots.get(FUEL_SLOT) != null && getId(slots.get(FUEL_SLOT)).equals("minecraft:bucket")) {
+                slots.put(FUEL_SLOT, stack(FUEL_SLOT, "minecraft:water_bucket", 1));
+            }
+            int produced = outcome.smelted() * smelting.resultCount();
+            if (output == null) {
+                slots.put(OUTPUT_SLOT, stack(OUTPUT_SLOT, smelting.result(), produced));
+            } else {
+                output.put("count", getCount(output) + produced);
+            }
+            shrink(slots, INPUT_SLOT, outcome.smelted());
+
+            Map<String, Object> recipesUsed = blockEntity.get("RecipesUsed") instanceof Map<?, ?> map ? cast(map) : new LinkedHashMap<>();
+            recipesUsed.put(smelting.recipeId(), (int) Math.min(Integer.MAX_VALUE, (long) getInt(recipesUsed, smelting.recipeId()) + outcome.smelted()));
+            blockEntity.put("RecipesUsed", recipesUsed);
+        }
+
+        blockEntity.put("BurnTime", (short) outcome.litTime());
+        blockEntity.put("CookTime", (short) outcome.cookingProgress());
+        if (slots.get(INPUT_SLOT) == null) {
+            blockEntity.put("CookTimeTotal", (short) BURN_TIME_STANDARD);
+        } else if (outcome.smelted() > 0 && smelting != null) {
+            blockEntity.put("CookTimeTotal", (short) smelting.cookingTime());
+        }
+        blockEntity.put("Items", new Nbt.ListTag(Nbt.COMPOUND, new ArrayList<>(slots.values())));
+        // the block stays lit in the save; a burnt-out furnace switches it off on its first tick after the chunk loads
+        blockEntity.put(LAST_GAME_TIME_TAG, gameTime);
+        return Outcome.UPDATED;
+    }
+
+    /**
+     * The number of smelted items the output slot can still accept, as FurnaceBurner.outputSpace().
+     * Only called for results known to stack to 64.
+     */
+    private static int outputSpace(Map<String, Object> output, DataPacks.Smelting smelting) {
+        int space;
+        if (output == null) {
+            space = MAX_STACK_SIZE / smelting.resultCount();
+        } else if (getId(output).equals(smelting.result()) && !output.containsKey("components")) {
+            space = (MAX_STACK_SIZE - getCount(output)) / smelting.resultCount();
+        } else {
+            space = 0;
+        }
+        return Math.max(0, space);
+    }
+
+    private static void shrink(Map<Byte, Map<String, Object>> slots, byte slot, int count) {
+        Map<String, Object> stack = slots.get(slot);
+        int remaining = getCount(stack) - count;
+        if (remaining > 0) {
+            stack.put("count", remaining);
+        } else {
+            slots.remove(slot);
+        }
+    }
+
+    private static Map<String, Object> stack(byte slot, String id, int count) {
+        Map<String, Object> stack = new LinkedHashMap<>();
+        stack.put("Slot", slot);
+        stack.put("id", id);
+        stack.put("count", count);
+        return stack;
+    }
+
+    private static String getId(Map<String, Object> stack) {
+        return stack.get("id") instanceof String id ? id : "";
+    }
+
+    private static int getCount(Map<String, Object> stack) {
+        return stack.containsKey("count") ? getInt(stack, "count") : 1;
+    }
+
+    private static int getInt(Map<String, Object> tag, String key) {
+        return tag.get(key) instanceof Number number ? number.intValue() : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> cast(Map<?, ?> map) {
+        return (Map<String, Object>) map;
+    }
+}
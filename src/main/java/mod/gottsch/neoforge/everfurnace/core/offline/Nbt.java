@@ -0,0 +1,201 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.offline;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal NBT reader and writer, so the offline tool runs without Minecraft on the classpath.
+ * Compounds are read as insertion-ordered maps and every other tag as its plain Java value:
+ * Byte, Short, Integer, Long, Float, Double, byte[], String, ListTag, int[] and long[].
+ */
+final class Nbt {
+    static final byte END = 0;
+    static final byte BYTE = 1;
+    static final byte SHORT = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte FLOAT = 5;
+    static final byte DOUBLE = 6;
+    static final byte BYTE_ARRAY = 7;
+    static final byte STRING = 8;
+    static final byte LIST = 9;
+    static final byte COMPOUND = 10;
+    static final byte INT_ARRAY = 11;
+    static final byte LONG_ARRAY = 12;
+
+    private static final int MAX_DEPTH = 512;
+
+    private Nbt() {}
+
+    /**
+     * A list tag, which keeps its element type so that empty lists are written back unchanged.
+     */
+    record ListTag(byte type, List<Object> values) {}
+
+    static Map<String, Object> read(DataInput in) throws IOException {
+        if (in.readByte() != COMPOUND) {
+            throw new IOException("root tag is not a compound");
+        }
+        in.readUTF();
+        return readCompound(in, 0);
+    }
+
+    static void write(DataOutput out, Map<String, Object> root) throws IOException {
+        out.writeByte(COMPOUND);
+        out.writeUTF("");
+        writeCompound(out, root);
+    }
+
+    private static Map<String, Object> readCompound(DataInput in, int depth) throws IOException {
+        Map<String, Object> compound = new LinkedHashMap<>();
+        byte type;
+        while ((type = in.readByte()) != END) {
+            compound.put(in.readUTF(), readPayload(in, type, depth + 1));
+        }
+        return compound;
+    }
+
+    private static Object readPayload(DataInput in, byte type, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("tag nested deeper than " + MAX_DEPTH);
+        }
+        switch (type) {
+            case BYTE: return in.readByte();
+            case SHORT: return in.readShort();
+            case INT: return in.readInt();
+            case LONG: return in.readLong();
+            case FLOAT: return in.readFloat();
+            case DOUBLE: return in.readDouble();
+            case BYTE_ARRAY: {
+                byte[] array = new byte[length(in)];
+                in.readFully(array);
+                return array;
+            }
+            case STRING: return in.readUTF();
+            case LIST: {
+                byte elementType = in.readByte();
+                int length = length(in);
+                List<Object> values = new ArrayList<>(Math.min(length, 1024));
+                for (int i = 0; i < length; i++) {
+                    values.add(readPayload(in, elementType, depth + 1));
+                }
+                return new ListTag(elementType, values);
+            }
+            case COMPOUND: return readCompound(in, depth);
+            case INT_ARRAY: {
+                int[] array = new int[length(in)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readInt();
+                }
+                return array;
+            }
+            case LONG_ARRAY: {
+                long[] array = new long[length(in)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readLong();
+                }
+                return array;
+            }
+            default: throw new IOException("unknown tag type " + type);
+        }
+    }
+
+    private static int length(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("negative tag length " + length);
+        }
+        return length;
+    }
+
+    private static void writeCompound(DataOutput out, Map<String, Object> compound) throws IOException {
+        for (Map.Entry<String, Object> entry : compound.entrySet()) {
+            out.writeByte(typeOf(entry.getValue()));
+            out.writeUTF(entry.getKey());
+            writePayload(out, entry.getValue());
+        }
+        out.writeByte(END);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writePayload(DataOutput out, Object value) throws IOException {
+        switch (typeOf(value)) {
+            case BYTE: out.writeByte((Byte) value); break;
+            case SHORT: out.writeShort((Short) value); break;
+            case INT: out.writeInt((Integer) value); break;
+            case LONG: out.writeLong((Long) value); break;
+            case FLOAT: out.writeFloat((Float) value); break;
+            case DOUBLE: out.writeDouble((Double) value); break;
+            case BYTE_ARRAY: {
+                byte[] array = (byte[]) value;
+                out.writeInt(array.length);
+                out.write(array);
+                break;
+            }
+            case STRING: out.writeUTF((String) value); break;
+            case LIST: {
+                ListTag list = (ListTag) value;
+                out.writeByte(list.values().isEmpty() ? END : list.type());
+                out.writeInt(list.values().size());
+                for (Object element : list.values()) {
+                    writePayload(out, element);
+                }
+                break;
+            }
+            case COMPOUND: writeCompound(out, (Map<String, Object>) value); break;
+            case INT_ARRAY: {
+                int[] array = (int[]) value;
+                out.writeInt(array.length);
+                for (int i : array) {
+                    out.writeInt(i);
+                }
+                break;
+            }
+            default: {
+                long[] array = (long[]) value;
+                out.writeInt(array.length);
+                for (long l : array) {
+                    out.writeLong(l);
+                }
+            }
+        }
+    }
+
+    private static byte typeOf(Object value) throws IOException {
+        if (value instanceof Byte) return BYTE;
+        if (value instanceof Short) return SHORT;
+        if (value instanceof Integer) return INT;
+        if (value instanceof Long) return LONG;
+        if (value instanceof Float) return FLOAT;
+        if (value instanceof Double) return DOUBLE;
+        if (value instanceof byte[]) return BYTE_ARRAY;
+        if (value instanceof String) return STRING;
+        if (value instanceof ListTag) return LIST;
+        if (value instanceof Map) return COMPOUND;
+        if (value instanceof int[]) return INT_ARRAY;
+        if (value instanceof long[]) return LONG_ARRAY;
+        throw new IOException("not a tag value: " + value.getClass());
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.offline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads and writes Anvil (.mca) region files: a header of 1024 chunk locations and timestamps,
+ * followed by the chunks in 4 KiB sectors.
+ * Chunks that are not rewritten keep their original bytes, including LZ4 and externally stored (.mcc) chunks.
+ * Like vanilla, a rewritten chunk of more than 255 sectors is stored in an external c.&lt;x&gt;.&lt;z&gt;.mcc file
+ * next to the region, which then only holds its compression type with the external flag.
+ */
+final class RegionFile {
+    private static final int SECTOR_BYTES = 4096;
+    private static final int CHUNKS = 1024;
+    private static final int HEADER_BYTES = 2 * SECTOR_BYTES;
+    private static final int MAX_SECTORS = 255;
+
+    static final byte GZIP = 1;
+    static final byte ZLIB = 2;
+    static final byte NONE = 3;
+    /** set on the compression type of a chunk stored in an external .mcc file */
+    private static final int EXTERNAL = 0x80;
+
+    private RegionFile() {}
+
+    /**
+     * A chunk as stored in the region file.
+     * @param index the chunk's index in the header, x + z * 32 within the region
+     * @param compression the compression type byte
+     * @param data the stored bytes after the compression type
+     */
+    record Chunk(int index, int timestamp, byte compression, byte[] data) {
+
+        boolean isReadable() {
+            return compression == GZIP || compression == ZLIB || compression == NONE;
+        }
+
+        Map<String, Object> read() throws IOException {
+            InputStream in = new ByteArrayInputStream(data);
+            if (compression == GZIP) {
+                in = new GZIPInputStream(in);
+            } else if (compression == ZLIB) {
+                in = new InflaterInputStream(in);
+            }
+            try (DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in))) {
+                return Nbt.read(dataIn);
+            }
+        }
+
+        /**
+         * @return a zlib-compressed chunk holding the tag
+         */
+        static Chunk of(int index, Map<String, Object> tag) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(bytes)))) {
+                Nbt.write(out, tag);
+            }
+            return new Chunk(index, (int) (System.currentTimeMillis() / 1000L), ZLIB, bytes.toByteArray());
+        }
+
+        private int dataSectors() {
+            return (Integer.BYTES + 1 + data.length + SECTOR_BYTES - 1) / SECTOR_BYTES;
+        }
+
+        /**
+         * @return true if the chunk is too large for the region file and is written to an external .mcc file
+         */
+        boolean isOversized() {
+            return dataSectors() > MAX_SECTORS;
+        }
+
+        /**
+         * @return the sectors the chunk takes in the region file
+         */
+        private int sectors() {
+            return isOversized() ? 1 : dataSectors();
+        }
+    }
+
+    /**
+     * Reads every chunk of the region file from a copy of the file on the heap.
+     * The file is not memory-mapped: Windows cannot replace a file while a mapping of it is alive,
+     * and a mapping is only released when its buffer is garbage collected.
+     */
+    static List<Chunk> read(Path path) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        int size = buffer.capacity();
+        if (size < HEADER_BYTES) {
+            // empty or truncated file, the game recreates its header
+            return chunks;
+        }
+        for (int index = 0; index < CHUNKS; index++) {
+            int location = buffer.getInt(index * Integer.BYTES);
+            if (location == 0) {
+                continue;
+            }
+            long offset = (long) (location >>> 8) * SECTOR_BYTES;
+            int sectors = location & 0xFF;
+            if (offset < HEADER_BYTES || offset + Integer.BYTES + 1 > size) {
+                throw new IOException("chunk " + index + " points outside the file");
+            }
+            // the length counts the compression type and the data, not itself
+            int length = buffer.getInt((int) offset);
+            if (length < 1 || offset + Integer.BYTES + length > size || length > sectors * SECTOR_BYTES - Integer.BYTES) {
+                throw new IOException("chunk " + index + " has an invalid length " + length);
+            }
+            byte[] data = new byte[length - 1];
+            buffer.get((int) offset + Integer.BYTES + 1, data);
+            int timestamp = buffer.getInt(SECTOR_BYTES + index * Integer.BYTES);
+            chunks.add(new Chunk(index, timestamp, buffer.get((int) offset + Integer.BYTES), data));
+        }
+        return chunks;
+    }
+
+    /**
+     * Writes the chunks to a new file next to the region and moves it over the region once complete,
+     * so an interrupted run never leaves a half-written region.
+     * Oversized chunks are written to their .mcc files first, so the region never points to a missing one.
+     */
+    static void write(Path path, List<Chunk> chunks) throws IOException {
+        for (Chunk chunk : chunks) {
+            if (chunk.isOversized()) {
+                Path external = externalPath(path, chunk.index());
+                Path externalTemp = external.resolveSibling(external.getFileName() + ".tmp");
+                Files.write(externalTemp, chunk.data());
+                Files.move(externalTemp, external, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        int[] locations = new int[CHUNKS];
+        int[] timestamps = new int[CHUNKS];
+        int sector = HEADER_BYTES / SECTOR_BYTES;
+        for (Chunk chunk : chunks) {
+            locations[chunk.index()] = sector << 8 | chunk.sectors();
+            timestamps[chunk.index()] = chunk.timestamp();
+            sector += chunk.sectors();
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            for (int location : locations) {
+                out.writeInt(location);
+            }
+            for (int timestamp : timestamps) {
+                out.writeInt(timestamp);
+            }
+            for (Chunk chunk : chunks) {
+                if (chunk.isOversized()) {
+                    out.writeInt(1);
+                    out.writeByte(chunk.compression() | EXTERNAL);
+                    pad(out, SECTOR_BYTES - Integer.BYTES - 1);
+                    continue;
+                }
+                out.writeInt(chunk.data().length + 1);
+                out.writeByte(chunk.compression());
+                out.write(chunk.data());
+                pad(out, chunk.sectors() * SECTOR_BYTES - Integer.BYTES - 1 - chunk.data().length);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the external file of a chunk of the region r.&lt;x&gt;.&lt;z&gt;.mca, named after the chunk's coordinates
+     */
+    static Path externalPath(Path region, int index) {
+        String[] parts = region.getFileName().toString().split("\\.");
+        int x = Integer.parseInt(parts[1]) * 32 + (index & 31);
+        int z = Integer.parseInt(parts[2]) * 32 + (index >> 5);
+        return region.resolveSibling("c." + x + "." + z + ".mcc");
+    }
+
+    private static void pad(OutputStream out, int count) throws IOException {
+        out.write(new byte[count]);
+    }
+}
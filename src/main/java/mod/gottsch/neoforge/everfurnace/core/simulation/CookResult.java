@@ -0,0 +1,33 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.simulation;
+
+/**
+ * The result delta of a CookSimulator run.
+ * @param smelted the number of items cooked
+ * @param fuelConsumed the number of fuel items taken
+ * @param litTime the new remaining burn time
+ * @param litDuration the new burn time of the current fuel
+ * @param cookingProgress the new progress of the current item
+ */
+public record CookResult(int smelted, int fuelConsumed, int litTime, int litDuration, int cookingProgress) {
+
+    public boolean isLit() {
+        return litTime > 0;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.simulation;
+
+/**
+ * Closed-form elapsed-time simulation of the vanilla furnace rules:
+ * <ul>
+ *     <li>every tick a lit furnace loses 1 lit time;</li>
+ *     <li>on the tick the lit time runs out, it takes the next fuel if it can cook, and carries on cooking;</li>
+ *     <li>while lit and able to cook, progress goes up by 1 and an item is cooked when it reaches the total time;</li>
+ *     <li>while lit and unable to cook, progress is 0;</li>
+ *     <li>once out, progress is reset while anything is in the fuel slot, otherwise it cools down by 2 per tick.</li>
+ * </ul>
+ * The cost of a simulation does not depend on the elapsed time or the number of items.
+ */
+public final class CookSimulator {
+
+    private CookSimulator() {}
+
+    /**
+     * Computes what deltaTime ticks would do to a lit state.
+     */
+    public static CookResult simulate(CookState state, long deltaTime) {
+        int litTime = state.litTime();
+        if (deltaTime <= 0 || litTime <= 0) {
+            return new CookResult(0, 0, litTime, state.litDuration(), state.cookingProgress());
+        }
+
+        int totalTime = state.cookingTotalTime();
+        int maxItems = state.maxItems();
+        int burnTime = state.fuelBurnTime();
+        int fuelCount = burnTime > 0 ? state.fuelCount() : 0;
+
+        if (maxItems == 0) {
+            // lit but unable to cook - the current fuel burns out and no new fuel is taken. progress is reset
+            // once a tick passes lit, or with input and fuel present, otherwise it only cools down
+            boolean reset = litTime > 1 || state.inputCount() > 0 && (fuelCount > 0 || state.fuelResidue());
+            int cookingProgress = reset ? 0 : (int) Math.max(0, state.cookingProgress() - 2 * deltaTime);
+            return new CookResult(0, 0, (int) Math.max(0, litTime - deltaTime), state.litDuration(), cookingProgress);
+        }
+
+        // cooking time needed to finish the current item, and every item that can be cooked
+        long firstItemTime = firstItemTime(state);
+        long neededTime = firstItemTime + (long) (maxItems - 1) * totalTime;
+        // the current fuel cooks for litTime - 1 ticks. each refuel happens on the tick the previous fuel runs out
+        // and cooks for burnTime ticks, so cooking is continuous until the fuel or the items run out.
+        long fuelTime = (litTime - 1) + (long) fuelCount * burnTime;
+        long cookTime = Math.min(deltaTime, Math.min(neededTime, fuelTime));
+
+        int smelted = cookTime < firstItemTime ? 0 : (int) Math.min(maxItems, 1 + (cookTime - firstItemTime) / totalTime);
+        int refuels = fuelCount == 0 || cookTime < litTime ? 0 : (int) Math.min(fuelCount, 1 + (cookTime - litTime) / burnTime);
+
+        int cookingProgress;
+        if (smelted == maxItems) {
+            cookingProgress = 0;
+        } else if (smelted == 0) {
+            cookingProgress = state.cookingProgress() + (int) cookTime;
+        } else {
+            cookingProgress = (int) ((cookTime - firstItemTime) % totalTime);
+        }
+
+        // the tick on which the last fuel taken runs out
+        long litEnd = litTime + (long) refuels * burnTime;
+        int newLitTime = (int) Math.max(0, litEnd - deltaTime);
+        int litDuration = refuels > 0 ? burnTime : state.litDuration();
+
+        if (newLitTime == 0 && smelted < maxItems) {
+            // out of fuel part way through an item
+            long unlitTicks = deltaTime - litEnd + 1;
+            cookingProgress = state.fuelResidue() ? 0 : (int) Math.max(0, cookingProgress - 2 * unlitTicks);
+        }
+
+        return new CookResult(smelted, refuels, newLitTime, litDuration, cookingProgress);
+    }
+
+    /**
+     * The number of ticks the state keeps cooking before it stalls, because the input is exhausted,
+     * the fuel is exhausted or the output is full.
+     * @return the number of ticks, or 0 if the state is not lit or cannot cook
+     */
+    public static long ticksUntilStall(CookState state) {
+        int maxItems = state.maxItems();
+        if (state.litTime() <= 0 || maxItems == 0) {
+            return 0;
+        }
+        int fuelCount = state.fuelBurnTime() > 0 ? state.fuelCount() : 0;
+        long neededTime = firstItemTime(state) + (long) (maxItems - 1) * state.cookingTotalTime();
+        long fuelTime = (state.litTime() - 1) + (long) fuelCount * state.fuelBurnTime();
+        return Math.min(neededTime, fuelTime);
+    }
+
+    /**
+     * The number of ticks until the state goes out: once it stalls, no more fuel is taken and the current fuel burns down.
+     * @return the number of ticks, or 0 if the state is not lit
+     */
+    public static long ticksUntilOut(CookState state) {
+        long stall = ticksUntilStall(state);
+        return stall + simulate(state, stall).litTime();
+    }
+
+    /**
+     * The number of ticks until the next tick on which an item is cooked or the current fuel runs out.
+     * @return the number of ticks, or 0 if the state is not lit
+     */
+    public static long ticksUntilNextEvent(CookState state) {
+        if (state.litTime() <= 0) {
+            return 0;
+        }
+        long nextEvent = state.litTime();
+        if (state.maxItems() > 0) {
+            nextEvent = Math.min(nextEvent, firstItemTime(state));
+        }
+        return nextEvent;
+    }
+
+    private static long firstItemTime(CookState state) {
+        return Math.max(1, state.cookingTotalTime() - state.cookingProgress());
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.simulation;
+
+/**
+ * The plain state of anything that cooks items one after another while burning fuel.
+ * Holds no Minecraft types; adapters reduce furnaces, campfire slots and brewing stands to this.
+ * @param inputCount the number of items waiting to be cooked
+ * @param fuelCount the number of fuel items that can still be taken
+ * @param fuelBurnTime the burn time of one of those fuel items
+ * @param fuelResidue whether the fuel slot still holds an item once all the fuel is taken
+ * @param litTime the remaining burn time of the current fuel
+ * @param litDuration the burn time of the current fuel
+ * @param cookingProgress the progress of the current item
+ * @param cookingTotalTime the time it takes to cook one item
+ * @param outputSpace the number of cooked items the output can still accept, 0 if the input cannot be cooked
+ */
+public record CookState(int inputCount, int fuelCount, int fuelBurnTime, boolean fuelResidue,
+                        int litTime, int litDuration, int cookingProgress, int cookingTotalTime,
+                        int outputSpace) {
+
+    /**
+     * @return the number of items that can be cooked before the input runs out or the output is full
+     */
+    public int maxItems() {
+        return cookingTotalTime <= 0 ? 0 : Math.max(0, Math.min(inputCount, outputSpace));
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.simulation;
+
+/**
+ * Reference for CookSimulator: steps the vanilla furnace serverTick() rules one tick at a time on a CookState.
+ * Its cost grows with the elapsed time, so it is only meant for verifying and benchmarking the closed form.
+ */
+public final class TickSimulator {
+
+    private TickSimulator() {}
+
+    public static CookResult simulate(CookState state, long deltaTime) {
+        int maxItems = state.maxItems();
+        int burnTime = state.fuelBurnTime();
+        int fuelCount = burnTime > 0 ? state.fuelCount() : 0;
+        int litTime = state.litTime();
+        int litDuration = state.litDuration();
+        int cookingProgress = state.cookingProgress();
+        int totalTime = state.cookingTotalTime();
+        int smelted = 0;
+        int fuelConsumed = 0;
+
+        for (long tick = 0; tick < deltaTime; tick++) {
+            if (litTime > 0) {
+                litTime--;
+            }
+            boolean hasInput = state.inputCount() > smelted;
+            boolean hasFuel = fuelConsumed < fuelCount || state.fuelResidue();
+            boolean canBurn = smelted < maxItems;
+            if (litTime > 0 || hasFuel && hasInput) {
+                if (litTime <= 0 && canBurn) {
+                    litTime = fuelConsumed < fuelCount ? burnTime : 0;
+                    if (litTime > 0) {
+                        litDuration = litTime;
+                        fuelConsumed++;
+                    }
+                }
+                if (litTime > 0 && canBurn) {
+                    cookingProgress++;
+                    if (cookingProgress == totalTime) {
+                        cookingProgress = 0;
+                        smelted++;
+                    }
+                } else {
+                    cookingProgress = 0;
+                }
+            } else if (cookingProgress > 0) {
+                cookingProgress = Math.max(0, Math.min(cookingProgress - 2, totalTime));
+            }
+        }
+        return new CookResult(smelted, fuelConsumed, litTime, litDuration, cookingProgress);
+    }
+}
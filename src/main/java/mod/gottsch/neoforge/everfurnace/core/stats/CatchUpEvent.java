@@ -0,0 +1,63 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event committed for every catch-up of a furnace, campfire or brewing stand.
+ */
+@Name("everfurnace.CatchUp")
+@Label("Furnace Catch-Up")
+@Category({"EverFurnace"})
+@Description("Time elapsed while a furnace, campfire or brewing stand was unloaded or not ticking, applied in one step")
+@StackTrace(false)
+public class CatchUpEvent extends Event {
+    @Label("Dimension")
+    String dimension;
+
+    @Label("X")
+    int x;
+
+    @Label("Y")
+    int y;
+
+    @Label("Z")
+    int z;
+
+    @Label("Delta Time")
+    @Description("The elapsed time in ticks")
+    long deltaTime;
+
+    @Label("Smelted")
+    @Description("The items smelted or cooked, or the brews made")
+    int smelted;
+
+    @Label("Fuel Consumed")
+    int fuelConsumed;
+
+    @Label("Cost")
+    @Timespan(Timespan.NANOSECONDS)
+    long nanos;
+}
@@ -0,0 +1,236 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.stats;
+
+import mod.gottsch.neoforge.everfurnace.core.EverFurnace;
+import mod.gottsch.neoforge.everfurnace.core.simulation.CookResult;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free catch-up counters shown by /everfurnace stats, and the source of CatchUpEvent.
+ * Covers the catch-ups of furnaces, campfires and brewing stands alike.
+ * <ul>
+ *     <li>totals in LongAdders;</li>
+ *     <li>a rolling minute of one-second buckets, each stamped with the second it counts;</li>
+ *     <li>a cost histogram with one bucket per power of 2 nanoseconds;</li>
+ *     <li>the positions of the most expensive catch-ups, replaced by compare-and-set.</li>
+ * </ul>
+ */
+@EventBusSubscriber(modid = EverFurnace.MODID)
+public final class CatchUpStats {
+    private static final int SECONDS = 60;
+    private static final int TOP_SIZE = 10;
+
+    private static final LongAdder COUNT = new LongAdder();
+    private static final LongAdder TOTAL_NANOS = new LongAdder();
+    private static final AtomicLong MAX_DELTA_TIME = new AtomicLong();
+
+    private static final AtomicLongArray SECOND_STAMPS = new AtomicLongArray(SECONDS);
+    private static final AtomicLongArray SECOND_COUNTS = new AtomicLongArray(SECONDS);
+
+    private static final AtomicLongArray HISTOGRAM = new AtomicLongArray(Long.SIZE);
+
+    private static final AtomicReferenceArray<Top> TOP = new AtomicReferenceArray<>(TOP_SIZE);
+
+    private CatchUpStats() {}
+
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a catch-up that started at the given start() time.
+     */
+    public static void record(Level level, BlockPos pos, long deltaTime, CookResult outcome, long start) {
+        record(level, pos, deltaTime, outcome.smelted(), outcome.fuelConsumed(), start);
+    }
+
+    /**
+     * Records a catch-up that started at the given start() time, for block entities without a single cook outcome,
+     * ie. campfires (the items cooked in all slots) and brewing stands (the brews made and the fuel used).
+     */
+    public static void record(Level level, BlockPos pos, long deltaTime, int smelted, int fuelConsumed, long start) {
+        long nanos = System.nanoTime() - start;
+
+        COUNT.increment();
+        TOTAL_NANOS.add(nanos);
+        MAX_DELTA_TIME.accumulateAndGet(deltaTime, Math::max);
+        countSecond(System.nanoTime() / 1_000_000_000L);
+        HISTOGRAM.incrementAndGet(bucket(nanos));
+        offerTop(new Top(level.dimension().location().toString(), pos.asLong(), deltaTime, nanos));
+
+        CatchUpEvent event = new CatchUpEvent();
+        if (event.shouldCommit()) {
+            event.dimension = level.dimension().location().toString();
+            event.x = pos.getX();
+            event.y = pos.getY();
+            event.z = pos.getZ();
+            event.deltaTime = deltaTime;
+            event.smelted = smelted;
+            event.fuelConsumed = fuelConsumed;
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    private static void countSecond(long second) {
+        int index = (int) (second % SECONDS);
+        long stamp = SECOND_STAMPS.get(index);
+        if (stamp != second && SECOND_STAMPS.compareAndSet(index, stamp, second)) {
+            // the bucket last counted a second over a minute ago
+            SECOND_COUNTS.set(index, 0);
+        }
+        SECOND_COUNTS.incrementAndGet(index);
+    }
+
+    private static int bucket(long nanos) {
+        return nanos <= 0 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(nanos) - 1;
+    }
+
+    private static void offerTop(Top entry) {
+        while (true) {
+            int slot = -1;
+            Top current = null;
+            for (int i = 0; i < TOP_SIZE; i++) {
+                Top top = TOP.get(i);
+                if (top == null || top.isSame(entry)) {
+                    slot = i;
+                    current = top;
+                    break;
+                }
+                if (current == null || top.nanos() < current.nanos()) {
+                    slot = i;
+                    current = top;
+                }
+            }
+            if (current != null && current.nanos() >= entry.nanos()) {
+                return;
+            }
+            if (TOP.compareAndSet(slot, current, entry)) {
+                return;
+            }
+        }
+    }
+
+    public static long getCount() {
+        return COUNT.sum();
+    }
+
+    public static long getTotalNanos() {
+        return TOTAL_NANOS.sum();
+    }
+
+    public static long getMaxDeltaTime() {
+        return MAX_DELTA_TIME.get();
+    }
+
+    /**
+     * @return the number of catch-ups in the last 60 seconds
+     */
+    public static long getLastMinute() {
+        long now = System.nanoTime() / 1_000_000_000L;
+        long count = 0;
+        for (int i = 0; i < SECONDS; i++) {
+            if (now - SECOND_STAMPS.get(i) < SECONDS) {
+                count += SECOND_COUNTS.get(i);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the upper bound in nanoseconds of the histogram bucket holding the given percentile, or 0 if empty
+     */
+    public static long getPercentile(double percentile) {
+        long[] counts = new long[Long.SIZE];
+        long total = 0;
+        for (int i = 0; i < Long.SIZE; i++) {
+            counts[i] = HISTOGRAM.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * total);
+        long seen = 0;
+        for (int i = 0; i < Long.SIZE; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i >= Long.SIZE - 2 ? Long.MAX_VALUE : (2L << i) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * @return the most expensive catch-ups, most expensive first
+     */
+    public static List<Top> getTop() {
+        List<Top> top = new ArrayList<>(TOP_SIZE);
+        for (int i = 0; i < TOP_SIZE; i++) {
+            Top entry = TOP.get(i);
+            if (entry != null) {
+                top.add(entry);
+            }
+        }
+        top.sort(Comparator.comparingLong(Top::nanos).reversed());
+        return top;
+    }
+
+    public static void reset() {
+        COUNT.reset();
+        TOTAL_NANOS.reset();
+        MAX_DELTA_TIME.set(0);
+        for (int i = 0; i < SECONDS; i++) {
+            SECOND_STAMPS.set(i, 0);
+            SECOND_COUNTS.set(i, 0);
+        }
+        for (int i = 0; i < Long.SIZE; i++) {
+            HISTOGRAM.set(i, 0);
+        }
+        for (int i = 0; i < TOP_SIZE; i++) {
+            TOP.set(i, null);
+        }
+    }
+
+    @SubscribeEvent
+    static void onServerStopped(ServerStoppedEvent event) {
+        reset();
+    }
+
+    /**
+     * The most expensive catch-up seen at a position.
+     */
+    public record Top(String dimension, long pos, long deltaTime, long nanos) {
+        boolean isSame(Top other) {
+            return pos == other.pos && dimension.equals(other.dimension);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.sync;
+
+import net.neoforged.fml.loading.FMLEnvironment;
+import net.neoforged.neoforge.network.handling.IPayloadContext;
+
+/**
+ * Client-side handlers of the mod's payloads.
+ * Registered on both sides but only ever called on the client, so it holds no client-only references itself
+ * and hands over to the Dist.CLIENT classes.
+ */
+public final class ClientPayloadHandler {
+
+    private ClientPayloadHandler() {}
+
+    public static void handleFurnaceProgress(FurnaceProgressPayload payload, IPayloadContext context) {
+        if (FMLEnvironment.dist.isClient()) {
+            FurnaceProgressClient.receive(payload);
+        }
+    }
+}
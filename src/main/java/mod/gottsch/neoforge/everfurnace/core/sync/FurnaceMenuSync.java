@@ -0,0 +1,158 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.sync;
+
+import mod.gottsch.neoforge.everfurnace.core.Config;
+import mod.gottsch.neoforge.everfurnace.core.EverFurnace;
+import mod.gottsch.neoforge.everfurnace.core.furnace.FurnaceBurner;
+import mod.gottsch.neoforge.everfurnace.core.furnace.SmeltingCache;
+import mod.gottsch.neoforge.everfurnace.core.mixin.IAbstractFurnaceMenu;
+import mod.gottsch.neoforge.everfurnace.core.mixin.IEverFurnaceBlockEntity;
+import net.minecraft.core.NonNullList;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.inventory.AbstractFurnaceMenu;
+import net.minecraft.world.level.block.entity.AbstractFurnaceBlockEntity;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.entity.player.PlayerContainerEvent;
+import net.neoforged.neoforge.event.entity.player.PlayerEvent;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+import net.neoforged.neoforge.event.tick.ServerTickEvent;
+import net.neoforged.neoforge.network.PacketDistributor;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Replaces the per-tick data slot sync of open furnace menus with a FurnaceProgressPayload sent only when
+ * the furnace departs from the prediction: an item finishing without a next one, the fuel running out or
+ * being refilled, or an inventory change that starts or stops the cooking.
+ * Only used for players whose client registered the payload.
+ */
+@EventBusSubscriber(modid = EverFurnace.MODID)
+public final class FurnaceMenuSync {
+    private static final int INPUT_SLOT = 0;
+    private static final int OUTPUT_SLOT = 2;
+
+    private static final Map<ServerPlayer, Tracker> TRACKERS = new IdentityHashMap<>();
+
+    private FurnaceMenuSync() {}
+
+    @SubscribeEvent
+    static void onContainerOpen(PlayerContainerEvent.Open event) {
+        if (!Config.interpolateMenus || !(event.getEntity() instanceof ServerPlayer player)
+                || !(event.getContainer() instanceof AbstractFurnaceMenu menu)
+                || !(((IAbstractFurnaceMenu) menu).getContainer() instanceof AbstractFurnaceBlockEntity furnace)
+                || !player.connection.hasChannel(FurnaceProgressPayload.TYPE)) {
+            return;
+        }
+        // the menu's initial data has already been sent in full
+        ((IPredictedMenu) menu).everfurnace$setPredicted(true);
+        Tracker tracker = new Tracker(menu, furnace);
+        TRACKERS.put(player, tracker);
+        tracker.send(player, tracker.read());
+    }
+
+    @SubscribeEvent
+    static void onContainerClose(PlayerContainerEvent.Close event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            stop(player);
+        }
+    }
+
+    @SubscribeEvent
+    static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            stop(player);
+        }
+    }
+
+    @SubscribeEvent
+    static void onServerTick(ServerTickEvent.Post event) {
+        Iterator<Map.Entry<ServerPlayer, Tracker>> iterator = TRACKERS.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ServerPlayer, Tracker> entry = iterator.next();
+            ServerPlayer player = entry.getKey();
+            Tracker tracker = entry.getValue();
+            if (player.containerMenu != tracker.menu || player.hasDisconnected()) {
+                ((IPredictedMenu) tracker.menu).everfurnace$setPredicted(false);
+                iterator.remove();
+                continue;
+            }
+            tracker.tick(player);
+        }
+    }
+
+    @SubscribeEvent
+    static void onServerStopped(ServerStoppedEvent event) {
+        TRACKERS.clear();
+    }
+
+    private static void stop(ServerPlayer player) {
+        Tracker tracker = TRACKERS.remove(player);
+        if (tracker != null) {
+            ((IPredictedMenu) tracker.menu).everfurnace$setPredicted(false);
+        }
+    }
+
+    /**
+     * @return true if the furnace can cook its input, as vanilla canBurn() without the fuel check
+     */
+    private static boolean isCooking(AbstractFurnaceBlockEntity furnace) {
+        IEverFurnaceBlockEntity accessor = (IEverFurnaceBlockEntity) furnace;
+        NonNullList<ItemStack> items = accessor.getItems();
+        if (furnace.getLevel() == null || items.get(INPUT_SLOT).isEmpty()) {
+            return false;
+        }
+        SmeltingCache.Smelting smelting = SmeltingCache.getSmelting(furnace.getLevel(), accessor.getRecipeType(), items.get(INPUT_SLOT));
+        return smelting.recipe() != null && FurnaceBurner.outputSpace(items.get(OUTPUT_SLOT), smelting.result()) > 0;
+    }
+
+    /**
+     * The open menu of one player and the state its client is predicting.
+     */
+    private static final class Tracker {
+        private final AbstractFurnaceMenu menu;
+        private final AbstractFurnaceBlockEntity furnace;
+        private FurnaceProgress predicted;
+
+        private Tracker(AbstractFurnaceMenu menu, AbstractFurnaceBlockEntity furnace) {
+            this.menu = menu;
+            this.furnace = furnace;
+        }
+
+        private FurnaceProgress read() {
+            return FurnaceProgress.of(((IAbstractFurnaceMenu) menu).getData(), isCooking(furnace));
+        }
+
+        private void tick(ServerPlayer player) {
+            FurnaceProgress actual = read();
+            predicted = predicted.next();
+            if (!actual.equals(predicted)) {
+                send(player, actual);
+            }
+        }
+
+        private void send(ServerPlayer player, FurnaceProgress progress) {
+            predicted = progress;
+            PacketDistributor.sendToPlayer(player, new FurnaceProgressPayload(menu.containerId, progress));
+        }
+    }
+}
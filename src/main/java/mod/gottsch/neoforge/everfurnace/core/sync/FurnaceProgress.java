@@ -0,0 +1,89 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.sync;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.codec.ByteBufCodecs;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.world.inventory.AbstractContainerMenu;
+import net.minecraft.world.inventory.ContainerData;
+
+/**
+ * The four data slots of a furnace menu, plus whether the furnace can cook its input.
+ * Between events the vanilla tick is deterministic, so the server and the client step the same
+ * prediction with next() and the server only sends a new state when the furnace departs from it.
+ */
+public record FurnaceProgress(int litTime, int litDuration, int cookingProgress, int cookingTotalTime, boolean cooking) {
+    // the data slot indices of AbstractFurnaceBlockEntity
+    private static final int DATA_LIT_TIME = 0;
+    private static final int DATA_LIT_DURATION = 1;
+    private static final int DATA_COOKING_PROGRESS = 2;
+    private static final int DATA_COOKING_TOTAL_TIME = 3;
+
+    public static final StreamCodec<ByteBuf, FurnaceProgress> STREAM_CODEC = StreamCodec.composite(
+            ByteBufCodecs.VAR_INT, FurnaceProgress::litTime,
+            ByteBufCodecs.VAR_INT, FurnaceProgress::litDuration,
+            ByteBufCodecs.VAR_INT, FurnaceProgress::cookingProgress,
+            ByteBufCodecs.VAR_INT, FurnaceProgress::cookingTotalTime,
+            ByteBufCodecs.BOOL, FurnaceProgress::cooking,
+            FurnaceProgress::new);
+
+    public static FurnaceProgress of(ContainerData data, boolean cooking) {
+        return new FurnaceProgress(data.get(DATA_LIT_TIME), data.get(DATA_LIT_DURATION),
+                data.get(DATA_COOKING_PROGRESS), data.get(DATA_COOKING_TOTAL_TIME), cooking);
+    }
+
+    /**
+     * @return the state after one vanilla serverTick(), assuming no fuel is taken
+     */
+    public FurnaceProgress next() {
+        int nextLitTime = Math.max(0, litTime - 1);
+        int nextProgress;
+        if (nextLitTime > 0 && cooking) {
+            // an item finishing starts the next one from 0
+            nextProgress = cookingProgress + 1 >= cookingTotalTime ? 0 : cookingProgress + 1;
+        } else if (nextLitTime > 0) {
+            nextProgress = 0;
+        } else {
+            nextProgress = Math.max(0, cookingProgress - 2);
+        }
+        return new FurnaceProgress(nextLitTime, litDuration, nextProgress, cookingTotalTime, cooking);
+    }
+
+    /**
+     * @return this state moved 1/ticks of the way to the target, or the target itself on the last tick
+     * or when the bars are scaled differently
+     */
+    public FurnaceProgress easeTowards(FurnaceProgress target, int ticks) {
+        if (ticks <= 1 || litDuration != target.litDuration || cookingTotalTime != target.cookingTotalTime) {
+            return target;
+        }
+        return new FurnaceProgress(litTime + (target.litTime - litTime) / ticks, litDuration,
+                cookingProgress + (target.cookingProgress - cookingProgress) / ticks, cookingTotalTime, target.cooking);
+    }
+
+    /**
+     * Writes the state into the client menu's data slots.
+     */
+    public void copyTo(AbstractContainerMenu menu) {
+        menu.setData(DATA_LIT_TIME, litTime);
+        menu.setData(DATA_LIT_DURATION, litDuration);
+        menu.setData(DATA_COOKING_PROGRESS, cookingProgress);
+        menu.setData(DATA_COOKING_TOTAL_TIME, cookingTotalTime);
+    }
+}
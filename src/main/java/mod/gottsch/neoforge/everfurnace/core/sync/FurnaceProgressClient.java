@@ -0,0 +1,85 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.sync;
+
+import mod.gottsch.neoforge.everfurnace.core.EverFurnace;
+import net.minecraft.client.Minecraft;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.inventory.AbstractFurnaceMenu;
+import net.neoforged.api.distmarker.Dist;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.client.event.ClientTickEvent;
+
+/**
+ * Steps the received FurnaceProgress every client tick and shows it in the open furnace menu.
+ * A correction from the server is eased in over a few ticks instead of making the bars jump.
+ */
+@EventBusSubscriber(modid = EverFurnace.MODID, value = Dist.CLIENT)
+public final class FurnaceProgressClient {
+    private static final int EASE_TICKS = 4;
+
+    private static int containerId;
+    private static FurnaceProgress progress;
+    // what the menu shows, trailing progress while a correction is eased in
+    private static FurnaceProgress shown;
+    private static int easeTicks;
+
+    private FurnaceProgressClient() {}
+
+    static void receive(FurnaceProgressPayload payload) {
+        if (shown != null && payload.containerId() == containerId) {
+            easeTicks = EASE_TICKS;
+        } else {
+            // a newly opened menu starts from the server's state
+            shown = payload.progress();
+            easeTicks = 0;
+        }
+        containerId = payload.containerId();
+        progress = payload.progress();
+        AbstractFurnaceMenu menu = getMenu();
+        if (menu != null) {
+            shown.copyTo(menu);
+        }
+    }
+
+    @SubscribeEvent
+    static void onClientTick(ClientTickEvent.Post event) {
+        if (progress == null || Minecraft.getInstance().isPaused()) {
+            return;
+        }
+        AbstractFurnaceMenu menu = getMenu();
+        if (menu == null) {
+            // the menu was closed, the next one starts with a new payload
+            progress = null;
+            shown = null;
+            return;
+        }
+        progress = progress.next();
+        shown = easeTicks > 0 ? shown.easeTowards(progress, easeTicks--) : progress;
+        shown.copyTo(menu);
+    }
+
+    private static AbstractFurnaceMenu getMenu() {
+        Player player = Minecraft.getInstance().player;
+        if (player != null && player.containerMenu instanceof AbstractFurnaceMenu menu && menu.containerId == containerId) {
+            return menu;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is part of EverFurnace.
+ * Copyright (c) 2024 Mark Gottschling (gottsch)
+ *
+ * EverFurnace is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * EverFurnace is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with EverFurnace.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package mod.gottsch.neoforge.everfurnace.core.sync;
+
+import io.netty.buffer.ByteBuf;
+import mod.gottsch.neoforge.everfurnace.core.EverFurnace;
+import net.minecraft.network.codec.ByteBufCodecs;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.network.event.RegisterPayloadHandlersEvent;
+
+/**
+ * Server to client: the progress of the open furnace menu, to be predicted until the next payload.
+ */
+@EventBusSubscriber(modid = EverFurnace.MODID, bus = EventBusSubscriber.Bus.MOD)
+public record FurnaceProgressPayload(int containerId, FurnaceProgress progress) implements CustomPacketPayload {
+    public static final CustomPacketPayload.Type<FurnaceProgressPayload> TYPE =
+            new CustomPacketPayload.Type<>(ResourceLocation.fromNamespaceAndPath(EverFurnace.MODID, "furnace_progress"));
+
+    public static final StreamCodec<ByteBuf, FurnaceProgressPayload> STREAM_CODEC = StreamCodec.composite(
+            ByteBufCodecs.VAR_INT, FurnaceProgressPayload::containerId,
+            FurnaceProgress.STREAM_CODEC, FurnaceProgressPayload::progress,
+            FurnaceProgressPayload::new);
+
+    @Override
+    public CustomPacketPayload.Type<FurnaceProgressPayload> type() {
+        return TYPE;
+    }
+
+    @SubscribeEvent
+    static void onRegisterPayloadHandlers(RegisterPayloadHandlersEvent event) {
+        // optional, so that clients without the mod keep the vanilla sync
+        event.registrar("1").optional()
+                .playToClient(TYPE, STREAM_CODEC, ClientPayloadHandler::handleFurnaceProgress);
+    }
+}